@@ -0,0 +1,195 @@
+package liquibase.sdk.github;
+
+import liquibase.sdk.util.DigestUtil;
+import liquibase.sdk.util.DownloadVerifier;
+import liquibase.sdk.util.FileLocks;
+import liquibase.sdk.util.ParallelUtil;
+import org.kohsuke.github.GHArtifact;
+import org.kohsuke.github.GHAsset;
+import org.kohsuke.github.GHRelease;
+import org.kohsuke.github.GHWorkflowRun;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs {@link GitHubClient} operations in the background and returns {@link CompletableFuture}s, so independent lookups
+ * and downloads overlap and dependent steps can be chained with thenCompose. Operations run on an executor from
+ * {@link ParallelUtil#newExecutor(int)}. {@link #close()} shuts it down and closes the GitHubClient.
+ * <p>
+ * Failed futures complete with a {@link CompletionException} wrapping the IOException thrown by the GitHubClient.
+ * {@link #await(CompletableFuture)} unwraps it again.
+ */
+public class AsyncGitHubClient implements Closeable {
+
+    private final GitHubClient github;
+    private final ExecutorService executor;
+
+    /**
+     * @param maxConcurrency how many operations can run at once
+     */
+    public AsyncGitHubClient(GitHubClient github, int maxConcurrency) {
+        this.github = github;
+        this.executor = ParallelUtil.newExecutor(maxConcurrency);
+    }
+
+    public GitHubClient getGitHubClient() {
+        return github;
+    }
+
+    public CompletableFuture<GHRelease> getRelease(String repo, String tagName) {
+        return supply(() -> github.getRelease(repo, tagName));
+    }
+
+    public CompletableFuture<List<GHAsset>> listAssets(GHRelease release) {
+        return supply(() -> release.listAssets().toList());
+    }
+
+    public CompletableFuture<File> downloadAsset(GHAsset asset, Collection<GHAsset> releaseAssets) {
+        return supply(() -> github.downloadAsset(asset, releaseAssets));
+    }
+
+    /**
+     * Completes with null if no branch matches, see {@link GitHubClient#findMatchingBranch(String, String...)}
+     */
+    public CompletableFuture<String> findMatchingBranch(String repo, String... branches) {
+        return supply(() -> github.findMatchingBranch(repo, branches));
+    }
+
+    /**
+     * Completes with null if no builds match, see {@link GitHubClient#findLastBuild(String, GitHubClient.BuildFilter, String)}
+     */
+    public CompletableFuture<GHWorkflowRun> findLastBuild(String repo, GitHubClient.BuildFilter buildFilter, String workflowId) {
+        return supply(() -> github.findLastBuild(repo, buildFilter, workflowId));
+    }
+
+    public CompletableFuture<GHWorkflowRun> findBuild(String repo, long runId) {
+        return supply(() -> github.findBuild(repo, runId));
+    }
+
+    /**
+     * Resolves the branch search to a branch label, then finds the last build of that branch.
+     * The returned {@link BranchBuild} has a null label if no branch matches, and a null run if the branch has no matching build.
+     */
+    public CompletableFuture<BranchBuild> findLastBuildForBranch(String repo, String branchSearch, String workflowId, boolean skipFailedBuilds) {
+        return findMatchingBranch(repo, branchSearch).thenCompose(label -> {
+            if (label == null) {
+                return CompletableFuture.completedFuture(new BranchBuild(repo, branchSearch, null, null));
+            }
+            return findLastBuild(repo, new GitHubClient.BuildFilter(repo, label, skipFailedBuilds), workflowId)
+                    .thenApply(run -> new BranchBuild(repo, branchSearch, label, run));
+        });
+    }
+
+    public CompletableFuture<List<GHArtifact>> listArtifacts(GHWorkflowRun run) {
+        return supply(() -> run.listArtifacts().toList());
+    }
+
+    /**
+     * Completes with null if the run has no such artifact, see {@link GitHubClient#downloadArtifact(GHWorkflowRun, String, FileLocks)}
+     */
+    public CompletableFuture<File> downloadArtifact(GHWorkflowRun run, String artifactName, FileLocks locks) {
+        return supply(() -> github.downloadArtifact(run, artifactName, locks));
+    }
+
+    public CompletableFuture<Map<DigestUtil.Algorithm, String>> downloadArtifact(URL url, File file, DownloadVerifier verifier) {
+        return supply(() -> github.downloadArtifact(url, file, verifier));
+    }
+
+    /**
+     * Waits for the future and returns its result, rethrowing the IOException or RuntimeException it failed with.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new InterruptedIOException("Interrupted while waiting for GitHub");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        github.close();
+    }
+
+    private <T> CompletableFuture<T> supply(Operation<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operation.run();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private interface Operation<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Result of {@link #findLastBuildForBranch(String, String, String, boolean)}
+     */
+    public static class BranchBuild {
+        private final String repo;
+        private final String branchSearch;
+        private final String label;
+        private final GHWorkflowRun run;
+
+        BranchBuild(String repo, String branchSearch, String label, GHWorkflowRun run) {
+            this.repo = repo;
+            this.branchSearch = branchSearch;
+            this.label = label;
+            this.run = run;
+        }
+
+        public String getRepo() {
+            return repo;
+        }
+
+        public String getBranchSearch() {
+            return branchSearch;
+        }
+
+        /**
+         * The matching branch label, or null if no branch matched
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * The last matching build, or null if there was none
+         */
+        public GHWorkflowRun getRun() {
+            return run;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package liquibase.sdk.github;
+
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.RequestNotExecutedException;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+
+/**
+ * {@link HttpTransport} using the httpclient5 async client. HTTP/2 is negotiated where the server supports it, so
+ * concurrent requests to the same host are multiplexed over one connection, and a few I/O threads serve every request
+ * in flight. Servers without HTTP/2 fall back to pooled HTTP/1.1 connections.
+ * <p>
+ * Response bodies are streamed to the reading thread with flow control: at most {@link #BUFFER_SIZE} bytes per response
+ * are buffered before the server is asked to wait, so a slow reader does not make a large download build up in memory.
+ */
+public class AsyncHttpTransport implements HttpTransport {
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final CloseableHttpAsyncClient httpclient;
+
+    public AsyncHttpTransport(int maxConnectionsPerRoute) {
+        this.httpclient = HttpAsyncClients.custom()
+                .disableRedirectHandling()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setDefaultTlsConfig(TlsConfig.custom()
+                                .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                                .build())
+                        .setMaxConnPerRoute(maxConnectionsPerRoute)
+                        .setMaxConnTotal(maxConnectionsPerRoute * 2)
+                        .build())
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(Math.min(4, Runtime.getRuntime().availableProcessors()))
+                        .build())
+                .setThreadFactory(new DefaultThreadFactory("liquibase-sdk-http", true))
+                .build();
+        this.httpclient.start();
+    }
+
+    @Override
+    public Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) throws IOException {
+        AsyncRequestBuilder requestBuilder;
+        try {
+            requestBuilder = AsyncRequestBuilder.create(method).setUri(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            requestBuilder.addHeader(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            requestBuilder.setEntity(AsyncEntityProducers.create(body, contentType == null ? null : ContentType.parse(contentType)));
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            StreamingResponse response = new StreamingResponse();
+            response.future = httpclient.execute(requestBuilder.build(), response, null);
+            try {
+                response.awaitHead();
+                return response;
+            } catch (RequestNotExecutedException e) {
+                //a pooled connection was closed by the server before the request went out, so it is safe to send again
+                if (attempt >= 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpclient.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Receives the response on an I/O thread and hands the body to the reading thread.
+     * Capacity is granted to the server as the reader consumes the buffered content.
+     */
+    private static class StreamingResponse implements AsyncResponseConsumer<Void>, Response {
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private Future<Void> future;
+        private FutureCallback<Void> resultCallback;
+        private HttpResponse head;
+        private long contentLength = -1;
+        private boolean ended;
+        private Exception failure;
+        private CapacityChannel capacityChannel;
+        private boolean granted;
+
+        @Override
+        public synchronized void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context, FutureCallback<Void> resultCallback) {
+            this.head = response;
+            this.resultCallback = resultCallback;
+            if (entityDetails == null) {
+                ended = true;
+                resultCallback.completed(null);
+            } else {
+                contentLength = entityDetails.getContentLength();
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context) {
+        }
+
+        @Override
+        public synchronized void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            this.capacityChannel = capacityChannel;
+            if (!granted) {
+                granted = true;
+                capacityChannel.update(BUFFER_SIZE);
+            }
+        }
+
+        @Override
+        public synchronized void consume(ByteBuffer src) {
+            byte[] chunk = new byte[src.remaining()];
+            src.get(chunk);
+            chunks.addLast(chunk);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void streamEnd(List<? extends Header> trailers) {
+            ended = true;
+            notifyAll();
+            resultCallback.completed(null);
+        }
+
+        @Override
+        public synchronized void failed(Exception cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        private synchronized void awaitHead() throws IOException {
+            while (head == null && failure == null) {
+                waitForData();
+            }
+            if (head == null) {
+                throw toIOException(failure);
+            }
+        }
+
+        private void waitForData() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new InterruptedIOException("Interrupted while waiting for response");
+            }
+        }
+
+        private static IOException toIOException(Exception e) {
+            if (e instanceof IOException) {
+                return (IOException) e;
+            }
+            return new IOException(e.getMessage(), e);
+        }
+
+        @Override
+        public int getCode() {
+            return head.getCode();
+        }
+
+        @Override
+        public String getReasonPhrase() {
+            return head.getReasonPhrase();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            Header header = head.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            Map<String, List<String>> returnMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Header header : head.getHeaders()) {
+                returnMap.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+            }
+            return returnMap;
+        }
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new InputStream() {
+                private byte[] current = new byte[0];
+                private int position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] single = new byte[1];
+                    int read = read(single, 0, 1);
+                    return read == -1 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (position == current.length) {
+                        current = nextChunk();
+                        position = 0;
+                        if (current == null) {
+                            current = new byte[0];
+                            return -1;
+                        }
+                    }
+                    int read = Math.min(len, current.length - position);
+                    System.arraycopy(current, position, b, off, read);
+                    position += read;
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Returns the next chunk of the body, or null at the end. Consuming a chunk grants the server capacity to send as much again.
+         */
+        private byte[] nextChunk() throws IOException {
+            byte[] chunk;
+            CapacityChannel channel;
+            synchronized (this) {
+                while (chunks.isEmpty() && !ended && failure == null) {
+                    waitForData();
+                }
+                if (chunks.isEmpty()) {
+                    if (failure != null) {
+                        throw toIOException(failure);
+                    }
+                    return null;
+                }
+                chunk = chunks.removeFirst();
+                channel = ended ? null : capacityChannel;
+            }
+
+            //outside the lock, the I/O thread may need it to deliver more content
+            if (channel != null) {
+                channel.update(chunk.length);
+            }
+            return chunk;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!ended && failure == null) {
+                //HTTP/2 resets just this stream, HTTP/1.1 drops the connection
+                future.cancel(true);
+            }
+            chunks.clear();
+        }
+    }
+}
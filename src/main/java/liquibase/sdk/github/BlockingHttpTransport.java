@@ -0,0 +1,106 @@
+package liquibase.sdk.github;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link HttpTransport} using the classic blocking httpclient5 client, with one thread and one HTTP/1.1 connection per request in flight.
+ */
+public class BlockingHttpTransport implements HttpTransport {
+
+    private final CloseableHttpClient httpclient;
+
+    public BlockingHttpTransport(int maxConnectionsPerRoute) {
+        this.httpclient = HttpClients.custom()
+                .disableRedirectHandling()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(maxConnectionsPerRoute)
+                        .setMaxConnTotal(maxConnectionsPerRoute * 2)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) throws IOException {
+        HttpUriRequestBase request;
+        try {
+            request = new HttpUriRequestBase(method, url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            request.addHeader(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            request.setEntity(new ByteArrayEntity(body, contentType == null ? null : ContentType.parse(contentType)));
+        }
+
+        //the target host is taken from the request's URI
+        ClassicHttpResponse response = httpclient.executeOpen(null, request, null);
+        return new Response() {
+            @Override
+            public int getCode() {
+                return response.getCode();
+            }
+
+            @Override
+            public String getReasonPhrase() {
+                return response.getReasonPhrase();
+            }
+
+            @Override
+            public String getHeader(String name) {
+                Header header = response.getFirstHeader(name);
+                return header == null ? null : header.getValue();
+            }
+
+            @Override
+            public Map<String, List<String>> getHeaders() {
+                Map<String, List<String>> returnMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (Header header : response.getHeaders()) {
+                    returnMap.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+                }
+                return returnMap;
+            }
+
+            @Override
+            public long getContentLength() {
+                HttpEntity entity = response.getEntity();
+                return entity == null ? -1 : entity.getContentLength();
+            }
+
+            @Override
+            public InputStream getContent() throws IOException {
+                HttpEntity entity = response.getEntity();
+                return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+            }
+
+            @Override
+            public void close() throws IOException {
+                response.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpclient.close();
+    }
+}
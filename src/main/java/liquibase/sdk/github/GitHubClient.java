@@ -1,18 +1,17 @@
 package liquibase.sdk.github;
 
+import liquibase.sdk.util.DigestUtil;
+import liquibase.sdk.util.DownloadVerifier;
+import liquibase.sdk.util.FileLocks;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ProtocolException;
 import org.kohsuke.github.*;
 import org.slf4j.Logger;
 
 import java.io.*;
-import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -20,15 +19,63 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.regex.Pattern;
 
-public class GitHubClient {
+public class GitHubClient implements Closeable {
 
-    private final GitHub github;
     private final Logger log;
     private final String githubToken;
+    private final TransportType transportType;
+    private GitHub github;
+    private HttpTransport transport;
+    private BundleMode bundleMode;
+    private HttpBundle bundle;
+    private int downloadSegments = 1;
+    private long minSegmentSize = 8 * 1024 * 1024;
     private static final String CORE_REPOSITORY = "liquibase";
     private static final String CORE_ARTIFACT = "liquibase-core";
     private static final String PRO_REPOSITORY = "liquibase-pro";
     private static final String PRO_ARTIFACT = "liquibase-commercial";
+    public static final int DOWNLOAD_ATTEMPTS = 3;
+    public static final long CACHED_ARTIFACT_MAX_AGE = 24 * 60 * 60 * 1000L;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 32;
+
+    /**
+     * How HTTP requests are sent.
+     */
+    public enum TransportType {
+        /**
+         * Classic blocking client, one HTTP/1.1 connection per request in flight. github-api uses its own default connector.
+         */
+        BLOCKING,
+        /**
+         * Async client negotiating HTTP/2, for both API calls and downloads. Concurrent requests share a connection per host.
+         */
+        ASYNC;
+
+        public static TransportType parse(String value) {
+            if (StringUtils.trimToNull(value) == null) {
+                return BLOCKING;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown HTTP transport '" + value + "'. Expected one of " + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * How requests use an {@link HttpBundle}, see {@link #setBundle(BundleMode, File)}
+     */
+    public enum BundleMode {
+        /**
+         * Send requests to GitHub and save every response in the bundle
+         */
+        RECORD,
+        /**
+         * Serve every request from the bundle without network access or a token
+         */
+        REPLAY
+    }
 
     /**
      * Creates testing client
@@ -37,12 +84,127 @@ public class GitHubClient {
         this.github = github;
         this.log = log;
         this.githubToken = null;
+        this.transportType = TransportType.BLOCKING;
+    }
+
+    /**
+     * Creates testing client sending all requests, including API calls, through the given transport
+     */
+    GitHubClient(String githubToken, HttpTransport transport, Logger log) {
+        this.log = log;
+        this.githubToken = githubToken;
+        this.transportType = TransportType.BLOCKING;
+        this.transport = transport;
     }
 
 
-    public GitHubClient(String githubToken, Logger log) throws IOException {
+    /**
+     * Number of connections used to download a file after GitHub redirects to its storage. 1 downloads over a single connection.
+     */
+    public void setDownloadSegments(int downloadSegments) {
+        this.downloadSegments = Math.max(1, downloadSegments);
+    }
+
+    /**
+     * Smallest number of bytes downloaded over one connection. Files up to this size use a single connection.
+     */
+    public void setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Records every API response and download into the given directory, or replays them from it.
+     * Must be called before the first request. Downloads use a single connection in either mode, so each file is recorded whole.
+     */
+    public synchronized void setBundle(BundleMode bundleMode, File directory) {
+        if (github != null || transport != null) {
+            throw new IllegalStateException("Bundle must be set before the first request");
+        }
+        this.bundleMode = bundleMode;
+        this.bundle = new HttpBundle(directory);
+    }
+
+    public GitHubClient(String githubToken, Logger log) {
+        this(githubToken, TransportType.BLOCKING, log);
+    }
+
+    /**
+     * Nothing is checked or sent until the first call that needs GitHub, so goals that only read local files
+     * work offline and without a token.
+     */
+    public GitHubClient(String githubToken, TransportType transportType, Logger log) {
         this.log = log;
         this.githubToken = githubToken;
+        this.transportType = transportType;
+    }
+
+    /**
+     * Connects to GitHub and checks the credentials on first use.
+     */
+    private synchronized GitHub getGitHub() throws IOException {
+        if (github == null) {
+            checkToken();
+            GitHub connected;
+            if (transportType == TransportType.ASYNC || bundleMode != null || transport != null) {
+                GitHubBuilder builder = new GitHubBuilder().withConnector(new TransportGitHubConnector(getTransport()));
+                if (StringUtils.trimToNull(githubToken) != null) {
+                    builder.withOAuthToken(githubToken);
+                }
+                connected = builder.build();
+            } else {
+                connected = GitHub.connectUsingOAuth(githubToken);
+            }
+            if (bundleMode == BundleMode.REPLAY) {
+                //credentials are not used, and an anonymous check would make requests that were never recorded
+                log.debug("Replaying github from " + bundle.getDirectory().getAbsolutePath());
+            } else if (connected.isCredentialValid()) {
+                log.debug("Successfully connected to github");
+            } else {
+                throw new IOException("Invalid github credentials. Check your liquibase.sdk.token property");
+            }
+            github = connected;
+        }
+        return github;
+    }
+
+    /**
+     * Returns true if requests are recorded into a bundle. Work that would normally be skipped because its result is
+     * already available locally must still make its requests then, or they would be missing when the bundle is replayed.
+     */
+    public synchronized boolean isRecording() {
+        return bundleMode == BundleMode.RECORD;
+    }
+
+    private synchronized HttpTransport getTransport() {
+        if (transport == null) {
+            if (bundleMode == BundleMode.REPLAY) {
+                transport = new ReplayingHttpTransport(bundle);
+            } else if (transportType == TransportType.ASYNC) {
+                transport = new AsyncHttpTransport(MAX_CONNECTIONS_PER_ROUTE);
+            } else {
+                transport = new BlockingHttpTransport(MAX_CONNECTIONS_PER_ROUTE);
+            }
+            if (bundleMode == BundleMode.RECORD) {
+                transport = new RecordingHttpTransport(transport, bundle);
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Closes the HTTP transport and its connections, if one was created. github-api's default connector has nothing to close.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    private void checkToken() throws IOException {
+        if (bundleMode == BundleMode.REPLAY) {
+            return;
+        }
         if (StringUtils.trimToNull(githubToken) == null) {
             throw new IOException("Missing github token\n" +
                     "Your github token is not set in liquibase.sdk.github.token.\n\n" +
@@ -58,13 +220,6 @@ public class GitHubClient {
                     "\t</profile>\n\n" +
                     "If you do not have a GitHub personal access token, you can create one at https://github.com/settings/tokens. It needs to be assigned the 'repo' scope");
         }
-
-        github = GitHub.connectUsingOAuth(githubToken);
-        if (github.isCredentialValid()) {
-            log.debug("Successfully connected to github");
-        } else {
-            throw new IOException("Invalid github credentials. Check your liquibase.sdk.token property");
-        }
     }
 
     public GHRelease getRelease(String repo, String tagName) throws IOException {
@@ -143,7 +298,7 @@ public class GitHubClient {
             repo = "liquibase/" + repo;
         }
 
-        return github.getRepository(repo);
+        return getGitHub().getRepository(repo);
     }
 
     protected Map<String, GHPullRequest> getAllOpenPullRequests(GHRepository repository) throws IOException {
@@ -275,7 +430,14 @@ public class GitHubClient {
             throw new IOException("Could not find successful build for branch " + branchLabel);
         }
 
+        return downloadArtifact(runToDownload, artifactName);
+    }
 
+    /**
+     * Downloads the artifact with the given name from a run found with {@link #findLastBuild(String, BuildFilter, String)}.
+     * Returns null if the run has no such artifact.
+     */
+    public File downloadArtifact(GHWorkflowRun runToDownload, String artifactName) throws IOException {
         log.info("Downloading artifacts in build #" + runToDownload.getRunNumber() + " originally ran at " + DateFormat.getDateTimeInstance().format(runToDownload.getCreatedAt()) + " -- " + runToDownload.getHtmlUrl());
 
         for (GHArtifact artifact : runToDownload.listArtifacts()) {
@@ -293,7 +455,137 @@ public class GitHubClient {
         return null;
     }
 
+    /**
+     * Like {@link #downloadArtifact(GHWorkflowRun, String)}, but downloads into the directory of the given locks, keyed
+     * by the artifact's id. Concurrent calls for the same artifact, from this or other processes, wait for a single
+     * download and reuse it. The returned file is shared, so it must not be modified or deleted.
+     * Cached artifacts not used for {@link #CACHED_ARTIFACT_MAX_AGE} milliseconds are deleted.
+     * While {@link #isRecording() recording}, the artifact is always downloaded again, so the bundle contains it.
+     */
+    public File downloadArtifact(GHWorkflowRun runToDownload, String artifactName, FileLocks locks) throws IOException {
+        log.info("Downloading artifacts in build #" + runToDownload.getRunNumber() + " originally ran at " + DateFormat.getDateTimeInstance().format(runToDownload.getCreatedAt()) + " -- " + runToDownload.getHtmlUrl());
+
+        for (GHArtifact artifact : runToDownload.listArtifacts()) {
+            if (artifact.getName().equals(artifactName)) {
+                deleteUnusedArtifacts(locks);
+
+                FileLocks.Creator download = tempFile -> {
+                    log.info("Downloading " + artifact.getName() + "...");
+                    downloadArtifact(artifact.getArchiveDownloadUrl(), tempFile);
+                };
+                String cachedName = "artifact-" + artifact.getId() + ".zip";
+                File file = isRecording() ? locks.create(cachedName, download) : locks.getOrCreate(cachedName, download);
+                log.info("Using " + artifact.getName() + " from " + file.getAbsolutePath());
+                return file;
+            } else {
+                log.debug("Not downloading " + artifact.getName());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes cached artifacts under their locks, so an artifact is never deleted between another process finding and using it.
+     */
+    private void deleteUnusedArtifacts(FileLocks locks) throws IOException {
+        File[] cachedFiles = locks.getDirectory().listFiles((dir, name) -> name.startsWith("artifact-") && (name.endsWith(".zip") || name.endsWith(".part")));
+        if (cachedFiles == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - CACHED_ARTIFACT_MAX_AGE;
+        for (File cachedFile : cachedFiles) {
+            if (cachedFile.lastModified() >= cutoff) {
+                continue;
+            }
+            if (cachedFile.getName().endsWith(".part")) {
+                //left behind by a download that did not finish
+                cachedFile.delete();
+                continue;
+            }
+            try (FileLocks.Lock ignored = locks.lock(cachedFile.getName())) {
+                if (cachedFile.lastModified() < cutoff) {
+                    log.debug("Deleting unused " + cachedFile.getAbsolutePath());
+                    cachedFile.delete();
+                }
+            }
+        }
+    }
+
     public File downloadArtifact(URL url) throws IOException {
+        File file = createDownloadFile(url);
+        downloadArtifact(url, file);
+        return file;
+    }
+
+    /**
+     * Downloads the given url into the given file, replacing its content.
+     * Zip downloads, which includes GitHub Actions artifacts, are checked as they are written. See {@link #downloadArtifact(URL, File, DownloadVerifier)}.
+     */
+    public void downloadArtifact(URL url, File file) throws IOException {
+        DownloadVerifier verifier = new DownloadVerifier();
+        verifier.setValidateZip(url.getPath().endsWith(".zip") || url.getPath().endsWith("/zip"));
+        downloadArtifact(url, file, verifier);
+    }
+
+    /**
+     * Downloads the given url into the given file, checking it with the verifier as it is written.
+     * Corrupt downloads are retried up to {@link #DOWNLOAD_ATTEMPTS} times in total. If every attempt is corrupt, the file is deleted.
+     *
+     * @return digests of the downloaded content, see {@link DownloadVerifier#copy(InputStream, OutputStream, long)}
+     */
+    public Map<DigestUtil.Algorithm, String> downloadArtifact(URL url, File file, DownloadVerifier verifier) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return getResponse(url, file, false, verifier);
+            } catch (DownloadVerifier.CorruptDownloadException e) {
+                if (attempt >= DOWNLOAD_ATTEMPTS) {
+                    file.delete();
+                    throw new IOException("Download of " + url + " is corrupt: " + e.getMessage(), e);
+                }
+                log.warn("Download of " + url + " is corrupt, retrying (attempt " + attempt + " of " + DOWNLOAD_ATTEMPTS + "): " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Downloads a release asset to a temp file. The download is checked against the asset's size and, if the release
+     * has one, the asset's checksum file. Checksum files are named after the asset with an extension like .sha256 or .sha1.
+     *
+     * @param releaseAssets all assets of the asset's release
+     */
+    public File downloadAsset(GHAsset asset, Collection<GHAsset> releaseAssets) throws IOException {
+        DownloadVerifier verifier = new DownloadVerifier();
+        verifier.setExpectedLength(asset.getSize());
+        verifier.setValidateZip(asset.getName().endsWith(".zip") || asset.getName().endsWith(".jar"));
+
+        //only the strongest checksum is checked
+        checksums:
+        for (DigestUtil.Algorithm algorithm : new DigestUtil.Algorithm[]{DigestUtil.Algorithm.SHA512, DigestUtil.Algorithm.SHA256, DigestUtil.Algorithm.SHA1, DigestUtil.Algorithm.MD5}) {
+            for (GHAsset checksumAsset : releaseAssets) {
+                if (checksumAsset.getName().equals(asset.getName() + "." + algorithm.getExtension())) {
+                    File checksumFile = downloadArtifact(new URL(checksumAsset.getBrowserDownloadUrl()));
+                    try {
+                        String checksum = DownloadVerifier.parseChecksumFile(new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.UTF_8));
+                        if (checksum != null) {
+                            log.debug("Checking " + asset.getName() + " against " + checksumAsset.getName());
+                            verifier.addExpectedDigest(algorithm, checksum);
+                            break checksums;
+                        }
+                    } finally {
+                        checksumFile.delete();
+                    }
+                }
+            }
+        }
+
+        URL url = new URL(asset.getBrowserDownloadUrl());
+        File file = createDownloadFile(url);
+        downloadArtifact(url, file, verifier);
+        return file;
+    }
+
+    private File createDownloadFile(URL url) throws IOException {
         String extension = url.getPath().replaceFirst(".*\\.", "");
         if (extension.equals(url.getPath())) {
             if (url.getPath().endsWith("/zip")) {
@@ -302,37 +594,33 @@ public class GitHubClient {
                 extension = "tmp";
             }
         }
-        File file = File.createTempFile("liquibase-sdk-" + url.getPath().replaceFirst(".*/", "").replaceAll("\\W", "_") + "-", "." + extension);
-
-        //archive.download() threw timeout errors too often. So using httpClient instead
-        try (CloseableHttpClient httpclient = HttpClients.custom()
-                .disableRedirectHandling()
-                .build()) {
-            getResponse(url, httpclient, file, false);
-        } catch (URISyntaxException e) {
-            throw new IOException(e);
-        }
-        return file;
+        return File.createTempFile("liquibase-sdk-" + url.getPath().replaceFirst(".*/", "").replaceAll("\\W", "_") + "-", "." + extension);
     }
 
-    private void getResponse(URL url, CloseableHttpClient httpclient, File file, boolean skipAuth) throws URISyntaxException, IOException {
-        HttpGet httpGet = new HttpGet(url.toURI());
+    private Map<DigestUtil.Algorithm, String> getResponse(URL url, File file, boolean skipAuth, DownloadVerifier verifier) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
         if (!skipAuth) {
-            httpGet.addHeader("Authorization", "token " + githubToken);
+            checkToken();
+            headers.put("Authorization", "token " + githubToken);
         }
 
-        try (CloseableHttpResponse response = httpclient.execute(httpGet)) {
+        //archive.download() threw timeout errors too often. So using httpClient instead
+        try (HttpTransport.Response response = getTransport().execute("GET", url, headers, null, null)) {
             if (response.getCode() == 302) {
-                getResponse(new URL(response.getHeader("Location").getValue()), httpclient, file, true);
-                return;
+                URL redirect = new URL(response.getHeader("Location"));
+                response.close();
+                if (downloadSegments > 1 && bundleMode == null) {
+                    //large downloads are redirected to storage that supports range requests
+                    return new SegmentedDownload(getTransport(), redirect, file, downloadSegments, minSegmentSize, log).download(verifier);
+                }
+                return getResponse(redirect, file, true, verifier);
             } else if (response.getCode() != 200) {
                 throw new IOException("Non-200 response: " + response.getCode() + " " + response.getReasonPhrase());
             }
-            try (OutputStream out = new FileOutputStream(file)) {
-                response.getEntity().writeTo(out);
+            try (InputStream in = response.getContent();
+                 OutputStream out = new FileOutputStream(file)) {
+                return verifier.copy(in, out, response.getContentLength());
             }
-        } catch (ProtocolException e) {
-            throw new IOException(e);
         }
     }
 
@@ -344,9 +632,20 @@ public class GitHubClient {
     }
 
     public Properties getInstalledBuildProperties(String repo) throws IOException {
-        GHRepository ghRepository = getRepository(repo);
-        String artifactName = handleArtifactName(ghRepository.getName());
-        String m2Location = String.format("/.m2/repository/org/%s/%s/0-SNAPSHOT/%s-0-SNAPSHOT.jar", ghRepository.getOwner().getName().toLowerCase(), artifactName, artifactName);
+        return readInstalledBuildProperties(repo, log);
+    }
+
+    /**
+     * Reads liquibase.build.properties from the installed 0-SNAPSHOT jar of the given "owner/name" repo.
+     * Only reads the local maven repository, so it does not need a GitHub connection.
+     */
+    public static Properties readInstalledBuildProperties(String repo, Logger log) throws IOException {
+        String[] repoParts = repo.split("/", 2);
+        if (repoParts.length != 2) {
+            throw new IOException("Repo " + repo + " is not in owner/name format");
+        }
+        String artifactName = handleArtifactName(repoParts[1]);
+        String m2Location = String.format("/.m2/repository/org/%s/%s/0-SNAPSHOT/%s-0-SNAPSHOT.jar", repoParts[0].toLowerCase(), artifactName, artifactName);
         File libraryJar = new File(System.getProperty("user.home") + m2Location);
         if (!libraryJar.exists()) {
             throw new IOException(String.format("Could not find jar for %s at %s", artifactName, libraryJar.getAbsolutePath()));
@@ -374,6 +673,28 @@ public class GitHubClient {
         return null;
     }
 
+    /**
+     * Returns the commit the installed 0-SNAPSHOT build of the given repo was built from,
+     * or null if it is not installed or does not record its commit.
+     */
+    public static String getInstalledCommit(String repo, Logger log) {
+        Properties buildProperties;
+        try {
+            buildProperties = readInstalledBuildProperties(repo, log);
+        } catch (IOException e) {
+            log.debug("Cannot read installed build: " + e.getMessage());
+            return null;
+        }
+        if (buildProperties == null) {
+            return null;
+        }
+
+        if (repo.endsWith("/" + PRO_REPOSITORY)) {
+            return StringUtils.trimToNull(buildProperties.getProperty("build.pro.commit"));
+        }
+        return StringUtils.trimToNull(buildProperties.getProperty("build.commit"));
+    }
+
     public void setPullRequestComment(String repo, String newComment, String pullRef, Pattern replaceComment, String mojoVersion) throws IOException {
         newComment = newComment
                 .replace("\\n", "\n")
@@ -496,7 +817,7 @@ public class GitHubClient {
         SUCCESS;
     }
 
-    public String handleArtifactName(String repositoryName) {
+    public static String handleArtifactName(String repositoryName) {
         String artifact = null;
         if (repositoryName.equalsIgnoreCase(PRO_REPOSITORY)) {
             artifact = PRO_ARTIFACT;
@@ -0,0 +1,50 @@
+package liquibase.sdk.github;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Directory of recorded HTTP exchanges, written by {@link RecordingHttpTransport} and served by {@link ReplayingHttpTransport}.
+ * <p>
+ * Each exchange is stored as KEY.properties, holding the request and the response status and headers, and KEY.body
+ * holding the response body. The key is a hash of the method, URL and request body. Request headers, including
+ * credentials, are not part of the key and are never stored, so a bundle can be copied to other machines or checked
+ * in as a test fixture.
+ * <p>
+ * Range headers are not part of the key either. Bundles store complete bodies, and replayed responses always return
+ * the whole body.
+ */
+public class HttpBundle {
+
+    static final String HEAD_EXTENSION = ".properties";
+    static final String BODY_EXTENSION = ".body";
+
+    private final File directory;
+
+    public HttpBundle(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    static String getKey(String method, URL url, byte[] body) {
+        String request = method.toUpperCase() + " " + url.toExternalForm();
+        if (body != null) {
+            request += " " + DigestUtils.sha256Hex(body);
+        }
+        return DigestUtils.sha256Hex(request.getBytes(StandardCharsets.UTF_8));
+    }
+
+    File getHeadFile(String key) {
+        return new File(directory, key + HEAD_EXTENSION);
+    }
+
+    File getBodyFile(String key) {
+        return new File(directory, key + BODY_EXTENSION);
+    }
+}
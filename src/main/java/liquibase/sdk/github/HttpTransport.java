@@ -0,0 +1,49 @@
+package liquibase.sdk.github;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the HTTP requests made by {@link GitHubClient}, for both API calls and downloads.
+ * Redirects are never followed, so callers decide whether to send credentials to the redirect target.
+ * Implementations are thread-safe and share connections between concurrent requests.
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Sends the request and returns as soon as the response headers arrive. The body is streamed from {@link Response#getContent()}.
+     *
+     * @param body request body, or null for none
+     */
+    Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) throws IOException;
+
+    interface Response extends Closeable {
+        int getCode();
+
+        String getReasonPhrase();
+
+        /**
+         * Returns the first value of the header, or null if it is not set. Names are not case-sensitive.
+         */
+        String getHeader(String name);
+
+        /**
+         * All headers, in a map whose keys are not case-sensitive
+         */
+        Map<String, List<String>> getHeaders();
+
+        /**
+         * Length of the body, or -1 if not known
+         */
+        long getContentLength();
+
+        /**
+         * The response body. Closing the response before the body is fully read abandons the rest of it.
+         */
+        InputStream getContent() throws IOException;
+    }
+}
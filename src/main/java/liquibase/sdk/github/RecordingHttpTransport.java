@@ -0,0 +1,186 @@
+package liquibase.sdk.github;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link HttpTransport} sending requests through another transport and saving every response in an {@link HttpBundle},
+ * so they can be replayed later with {@link ReplayingHttpTransport}.
+ * <p>
+ * Bodies are written to the bundle as the caller reads them. A body that is closed before it is fully read is still
+ * read to the end, so the bundle always holds the complete response. An exchange is only added to the bundle once its
+ * body is complete.
+ */
+public class RecordingHttpTransport implements HttpTransport {
+
+    private final HttpTransport delegate;
+    private final HttpBundle bundle;
+
+    public RecordingHttpTransport(HttpTransport delegate, HttpBundle bundle) {
+        this.delegate = delegate;
+        this.bundle = bundle;
+    }
+
+    @Override
+    public Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) throws IOException {
+        Response response = delegate.execute(method, url, headers, body, contentType);
+        return new RecordingResponse(HttpBundle.getKey(method, url, body), method, url, response);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private class RecordingResponse implements Response {
+        private final String key;
+        private final String method;
+        private final URL url;
+        private final Response response;
+        private File partFile;
+        private InputStream content;
+        private boolean failed;
+        private boolean closed;
+
+        private RecordingResponse(String key, String method, URL url, Response response) {
+            this.key = key;
+            this.method = method;
+            this.url = url;
+            this.response = response;
+        }
+
+        @Override
+        public int getCode() {
+            return response.getCode();
+        }
+
+        @Override
+        public String getReasonPhrase() {
+            return response.getReasonPhrase();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.getContentLength();
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (content == null) {
+                bundle.getDirectory().mkdirs();
+                partFile = Files.createTempFile(bundle.getDirectory().toPath(), key, ".part").toFile();
+                OutputStream out = new FileOutputStream(partFile);
+                content = new FilterInputStream(new TeeInputStream(response.getContent(), out, true)) {
+                    private boolean drained;
+
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            return super.read();
+                        } catch (IOException e) {
+                            failed = true;
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        try {
+                            return super.read(b, off, len);
+                        } catch (IOException e) {
+                            failed = true;
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            if (!drained && !failed) {
+                                drained = true;
+                                IOUtils.copy(this, NullOutputStream.INSTANCE);
+                            }
+                        } finally {
+                            super.close();
+                        }
+                    }
+                };
+            }
+            return content;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                //reads whatever the caller did not, so the recorded body is complete
+                getContent().close();
+                if (!failed) {
+                    save();
+                }
+            } finally {
+                if (partFile != null) {
+                    partFile.delete();
+                }
+                response.close();
+            }
+        }
+
+        private void save() throws IOException {
+            Properties head = new Properties();
+            head.setProperty("method", method);
+            head.setProperty("url", url.toExternalForm());
+            head.setProperty("code", String.valueOf(response.getCode()));
+            if (response.getReasonPhrase() != null) {
+                head.setProperty("reason", response.getReasonPhrase());
+            }
+            int i = 0;
+            for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                for (String value : header.getValue()) {
+                    head.setProperty("header." + i + ".name", header.getKey());
+                    head.setProperty("header." + i + ".value", value);
+                    i++;
+                }
+            }
+
+            File headPartFile = Files.createTempFile(bundle.getDirectory().toPath(), key, ".part").toFile();
+            try {
+                try (OutputStream out = new FileOutputStream(headPartFile)) {
+                    head.store(out, method + " " + url);
+                }
+                //the head is moved last, so a replay never sees it without its body
+                Files.move(partFile.toPath(), bundle.getBodyFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(headPartFile.toPath(), bundle.getHeadFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                headPartFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package liquibase.sdk.github;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * {@link HttpTransport} serving every request from an {@link HttpBundle} without network access.
+ * Requests that were not recorded fail with a {@link FileNotFoundException}.
+ * Bodies are streamed from the bundle files rather than loaded into memory.
+ */
+public class ReplayingHttpTransport implements HttpTransport {
+
+    private final HttpBundle bundle;
+
+    public ReplayingHttpTransport(HttpBundle bundle) {
+        this.bundle = bundle;
+    }
+
+    @Override
+    public Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) throws IOException {
+        String key = HttpBundle.getKey(method, url, body);
+        File headFile = bundle.getHeadFile(key);
+        File bodyFile = bundle.getBodyFile(key);
+        if (!headFile.exists() || !bodyFile.exists()) {
+            throw new FileNotFoundException("No recorded response for " + method + " " + url + " in " + bundle.getDirectory().getAbsolutePath());
+        }
+
+        Properties head = new Properties();
+        try (InputStream in = Files.newInputStream(headFile.toPath())) {
+            head.load(in);
+        }
+
+        Map<String, List<String>> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; head.getProperty("header." + i + ".name") != null; i++) {
+            responseHeaders.computeIfAbsent(head.getProperty("header." + i + ".name"), name -> new ArrayList<>())
+                    .add(head.getProperty("header." + i + ".value"));
+        }
+
+        return new Response() {
+            @Override
+            public int getCode() {
+                return Integer.parseInt(head.getProperty("code"));
+            }
+
+            @Override
+            public String getReasonPhrase() {
+                return head.getProperty("reason");
+            }
+
+            @Override
+            public String getHeader(String name) {
+                List<String> values = responseHeaders.get(name);
+                return values == null ? null : values.get(0);
+            }
+
+            @Override
+            public Map<String, List<String>> getHeaders() {
+                return responseHeaders;
+            }
+
+            @Override
+            public long getContentLength() {
+                return bodyFile.length();
+            }
+
+            @Override
+            public InputStream getContent() throws IOException {
+                return new BufferedInputStream(Files.newInputStream(bodyFile.toPath()), 64 * 1024);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,258 @@
+package liquibase.sdk.github;
+
+import liquibase.sdk.util.DigestUtil;
+import liquibase.sdk.util.DownloadVerifier;
+import liquibase.sdk.util.ParallelUtil;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a url over several connections, each fetching one byte range into its place in a preallocated file.
+ * <p>
+ * The first request asks for the first range. If the server answers with the whole content instead, or the content is
+ * no bigger than one range, it is downloaded over that single connection. Otherwise the remaining ranges are requested
+ * in parallel. Meanwhile the calling thread reads the file back in order as ranges are written and passes it to the
+ * {@link DownloadVerifier}, so checking overlaps the download instead of following it.
+ */
+class SegmentedDownload {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final HttpTransport transport;
+    private final URL url;
+    private final File file;
+    private final int maxSegments;
+    private final long minSegmentSize;
+    private final Logger log;
+
+    private long[] starts;
+    private long[] ends;
+    private long[] written;
+    private Throwable failure;
+
+    SegmentedDownload(HttpTransport transport, URL url, File file, int maxSegments, long minSegmentSize, Logger log) {
+        this.transport = transport;
+        this.url = url;
+        this.file = file;
+        this.maxSegments = maxSegments;
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+        this.log = log;
+    }
+
+    Map<DigestUtil.Algorithm, String> download(DownloadVerifier verifier) throws IOException {
+        try (HttpTransport.Response firstResponse = get(0, minSegmentSize)) {
+            long total = -1;
+            if (firstResponse.getCode() == 206) {
+                long[] range = parseContentRange(firstResponse.getHeader("Content-Range"));
+                if (range == null || range[0] != 0) {
+                    throw new IOException("Unexpected Content-Range for " + url + ": " + firstResponse.getHeader("Content-Range"));
+                }
+                total = range[2];
+            } else if (firstResponse.getCode() != 200) {
+                throw new IOException("Non-200 response: " + firstResponse.getCode() + " " + firstResponse.getReasonPhrase());
+            }
+
+            if (firstResponse.getCode() == 200 || total <= minSegmentSize) {
+                log.debug("Downloading " + url.getPath() + " over a single connection");
+                try (InputStream in = firstResponse.getContent();
+                     OutputStream out = new FileOutputStream(file)) {
+                    return verifier.copy(in, out, firstResponse.getContentLength());
+                }
+            }
+
+            return downloadSegments(firstResponse, total, verifier);
+        }
+    }
+
+    private HttpTransport.Response get(long start, long end) throws IOException {
+        return transport.execute("GET", url, Collections.singletonMap("Range", "bytes=" + start + "-" + (end - 1)), null, null);
+    }
+
+    private Map<DigestUtil.Algorithm, String> downloadSegments(HttpTransport.Response firstResponse, long total, DownloadVerifier verifier) throws IOException {
+        //the first segment is the range already requested, the rest of the content is split evenly between the others
+        int segments = (int) Math.max(2, Math.min(maxSegments, (total + minSegmentSize - 1) / minSegmentSize));
+        long remainingSize = (total - minSegmentSize + segments - 2) / (segments - 1);
+        starts = new long[segments];
+        ends = new long[segments];
+        written = new long[segments];
+        ends[0] = minSegmentSize;
+        for (int i = 1; i < segments; i++) {
+            starts[i] = ends[i - 1];
+            ends[i] = Math.min(total, starts[i] + remainingSize);
+        }
+        log.debug("Downloading " + url.getPath() + " (" + total + " bytes) in " + segments + " segments");
+
+        ExecutorService executor = ParallelUtil.newExecutor(segments);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(total);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < segments; i++) {
+                int segment = i;
+                if (starts[segment] >= ends[segment]) {
+                    //rounding can leave nothing for the last segments of small downloads
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    try {
+                        if (segment == 0) {
+                            fetch(segment, firstResponse.getContent(), channel);
+                        } else {
+                            fetchRange(segment, channel);
+                        }
+                    } catch (Throwable e) {
+                        fail(e);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+
+            Map<DigestUtil.Algorithm, String> digests = verifier.copy(new WrittenContentInputStream(channel, total), NullOutputStream.INSTANCE, total);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return digests;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + url);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void fetchRange(int segment, FileChannel channel) throws IOException {
+        try (HttpTransport.Response response = get(starts[segment], ends[segment])) {
+            long[] range = parseContentRange(response.getHeader("Content-Range"));
+            if (response.getCode() != 206 || range == null || range[0] != starts[segment]) {
+                throw new IOException("Range request for " + url + " failed: " + response.getCode() + " " + response.getReasonPhrase());
+            }
+            try (InputStream in = response.getContent()) {
+                fetch(segment, in, channel);
+            }
+        }
+    }
+
+    private void fetch(int segment, InputStream in, FileChannel channel) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long position = starts[segment];
+        while (position < ends[segment]) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, ends[segment] - position));
+            if (read == -1) {
+                throw new DownloadVerifier.CorruptDownloadException("Segment " + segment + " of " + url.getPath() + " ended after " + (position - starts[segment]) + " of " + (ends[segment] - starts[segment]) + " bytes");
+            }
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+            synchronized (this) {
+                written[segment] = position - starts[segment];
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the start, end and total length in a "bytes start-end/total" header, or null if it is missing or in another format.
+     */
+    static long[] parseContentRange(String header) {
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3))};
+    }
+
+    /**
+     * Reads the file in order, waiting for each byte to be written by its segment.
+     */
+    private class WrittenContentInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long total;
+        private long position;
+
+        private WrittenContentInputStream(FileChannel channel, long total) {
+            this.channel = channel;
+            this.total = total;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= total) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            int segment = 0;
+            while (position >= ends[segment]) {
+                segment++;
+            }
+
+            long available;
+            synchronized (SegmentedDownload.this) {
+                while ((available = starts[segment] + written[segment] - position) <= 0) {
+                    if (failure != null) {
+                        throw failure instanceof IOException ? (IOException) failure : new IOException(failure.getMessage(), failure);
+                    }
+                    try {
+                        SegmentedDownload.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while downloading " + url);
+                    }
+                }
+            }
+
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
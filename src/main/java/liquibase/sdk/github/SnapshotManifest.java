@@ -0,0 +1,142 @@
+package liquibase.sdk.github;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Records which build was prefetched for each repo and branch search, and where its artifacts were downloaded.
+ * <p>
+ * Written by the prefetch-snapshots goal so install goals can use the downloaded artifacts without contacting GitHub.
+ * Artifact files are stored next to the manifest. All methods are thread-safe.
+ */
+public class SnapshotManifest {
+
+    public static final String FILE_NAME = "snapshot-manifest.properties";
+
+    private final File file;
+    private final Properties properties = new Properties();
+
+    private SnapshotManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the manifest from the given file, or from {@link #FILE_NAME} if given a directory.
+     * Returns an empty manifest if the file does not exist yet.
+     */
+    public static SnapshotManifest load(File fileOrDirectory) throws IOException {
+        File file = fileOrDirectory;
+        if (fileOrDirectory.isDirectory()) {
+            file = new File(fileOrDirectory, FILE_NAME);
+        }
+
+        SnapshotManifest manifest = new SnapshotManifest(file);
+        if (file.exists()) {
+            try (InputStream input = Files.newInputStream(file.toPath())) {
+                manifest.properties.load(input);
+            }
+        }
+        return manifest;
+    }
+
+    public File getDirectory() {
+        return file.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Records the build found for the given branch search.
+     *
+     * @param artifacts artifact name to the downloaded file, which must be in {@link #getDirectory()}
+     */
+    public synchronized void record(String repo, String branchSearch, String matchingLabel, long runNumber, String headSha, Map<String, File> artifacts) {
+        String prefix = prefix(repo, branchSearch);
+        properties.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(prefix))
+                .forEach(properties::remove);
+
+        properties.setProperty(prefix + "label", matchingLabel);
+        properties.setProperty(prefix + "runNumber", String.valueOf(runNumber));
+        properties.setProperty(prefix + "headSha", headSha);
+        for (Map.Entry<String, File> artifact : artifacts.entrySet()) {
+            properties.setProperty(prefix + "artifact." + artifact.getKey(), artifact.getValue().getName());
+        }
+    }
+
+    /**
+     * Returns what was prefetched for the given repo and branch search, or null if it was not prefetched.
+     */
+    public synchronized Entry get(String repo, String branchSearch) {
+        String prefix = prefix(repo, branchSearch);
+        String label = properties.getProperty(prefix + "label");
+        if (label == null) {
+            return null;
+        }
+
+        Properties entryProperties = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                entryProperties.setProperty(key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+        return new Entry(entryProperties);
+    }
+
+    /**
+     * Writes the manifest, replacing the previous file in one step.
+     */
+    public synchronized void save() throws IOException {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(output, "Written by prefetch-snapshots");
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String prefix(String repo, String branchSearch) {
+        return repo + "@" + branchSearch.replaceAll("\\s", "") + ".";
+    }
+
+    public class Entry {
+        private final Properties properties;
+
+        private Entry(Properties properties) {
+            this.properties = properties;
+        }
+
+        /**
+         * The branch label found for the branch search, in `owner:branch` format
+         */
+        public String getLabel() {
+            return properties.getProperty("label");
+        }
+
+        public long getRunNumber() {
+            return Long.parseLong(properties.getProperty("runNumber"));
+        }
+
+        public String getHeadSha() {
+            return properties.getProperty("headSha");
+        }
+
+        /**
+         * Returns the downloaded artifact, or null if it was not prefetched or has since been deleted.
+         */
+        public File getArtifact(String artifactName) {
+            String fileName = properties.getProperty("artifact." + artifactName);
+            if (fileName == null) {
+                return null;
+            }
+            File artifactFile = new File(getDirectory(), fileName);
+            if (!artifactFile.exists()) {
+                return null;
+            }
+            return artifactFile;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package liquibase.sdk.github;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends github-api requests through an {@link HttpTransport}, so API calls share the transport's connections with downloads.
+ */
+public class TransportGitHubConnector implements GitHubConnector {
+
+    private final HttpTransport transport;
+
+    public TransportGitHubConnector(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : request.allHeaders().entrySet()) {
+            if (header.getKey() != null && header.getValue() != null) {
+                headers.put(header.getKey(), String.join(", ", header.getValue()));
+            }
+        }
+
+        byte[] body = null;
+        if (request.hasBody()) {
+            try (InputStream in = request.body()) {
+                body = IOUtils.toByteArray(in);
+            }
+        }
+
+        HttpTransport.Response response = transport.execute(request.method(), request.url(), headers, body, request.contentType());
+        return new GitHubConnectorResponse.ByteArrayResponse(request, response.getCode(), response.getHeaders()) {
+            @Override
+            protected InputStream rawBodyStream() throws IOException {
+                return response.getContent();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    response.close();
+                }
+            }
+        };
+    }
+}
@@ -1,19 +1,29 @@
 package liquibase.sdk.maven.plugins;
 
 import liquibase.sdk.github.GitHubClient;
+import liquibase.sdk.github.SnapshotManifest;
+import liquibase.sdk.util.ArtifactInstaller;
+import liquibase.sdk.util.FileLocks;
+import liquibase.sdk.util.ParallelUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.installation.InstallationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
 
@@ -32,6 +42,60 @@ abstract class AbstractGitHubMojo extends AbstractMojo {
     @Component
     private BuildPluginManager pluginManager;
 
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * If true, install artifacts with a single Maven Resolver request instead of running maven-install-plugin for each jar.
+     */
+    @Parameter(property = "liquibase.sdk.batchInstall", defaultValue = "true")
+    protected boolean batchInstall;
+
+    /**
+     * Number of jars to download or extract concurrently while earlier ones are installed.
+     */
+    @Parameter(property = "liquibase.sdk.downloadThreads", defaultValue = "4")
+    protected int downloadThreads;
+
+    /**
+     * Maximum number of downloaded jars waiting to be installed. Downloads pause when this many are waiting, which bounds temp disk usage.
+     */
+    @Parameter(property = "liquibase.sdk.maxPendingDownloads", defaultValue = "8")
+    protected int maxPendingDownloads;
+
+    /**
+     * Number of connections used to download each large file. Files are split into byte ranges that download in parallel.
+     */
+    @Parameter(property = "liquibase.sdk.downloadSegments", defaultValue = "4")
+    protected int downloadSegments;
+
+    /**
+     * Smallest byte range downloaded over one connection. Files up to this size use a single connection.
+     */
+    @Parameter(property = "liquibase.sdk.minSegmentSize", defaultValue = "8388608")
+    protected long minSegmentSize;
+
+    /**
+     * How to send HTTP requests: "blocking" uses one HTTP/1.1 connection per request, "async" negotiates HTTP/2 so
+     * API calls and download segments share a connection per host.
+     */
+    @Parameter(property = "liquibase.sdk.httpTransport", defaultValue = "blocking")
+    protected String httpTransport;
+
+    /**
+     * Directory to save every GitHub API response and download in, so the same goals can run later from
+     * replayBundle without network access.
+     */
+    @Parameter(property = "liquibase.sdk.recordBundle")
+    protected String recordBundle;
+
+    /**
+     * Directory written with recordBundle. If set, all GitHub API calls and downloads are served from it, without
+     * network access or a github token. Requests that were not recorded fail.
+     */
+    @Parameter(property = "liquibase.sdk.replayBundle")
+    protected String replayBundle;
+
     /**
      * Github authentication token.
      */
@@ -44,8 +108,43 @@ abstract class AbstractGitHubMojo extends AbstractMojo {
     @Parameter(property = "liquibase.sdk.repo", defaultValue = "liquibase/liquibase")
     protected String repo;
 
+    /**
+     * Manifest written by prefetch-snapshots, or the directory containing it. If set, install goals use the
+     * prefetched artifacts instead of contacting GitHub whenever the manifest has an entry for the repo and branch.
+     */
+    @Parameter(property = "liquibase.sdk.snapshotManifest")
+    protected String snapshotManifest;
+
+    /**
+     * Directory for downloads and lock files shared by concurrent builds, so only one of them downloads a given artifact
+     * or installs a given jar at a time. Defaults to .cache/liquibase-sdk in the local Maven repository.
+     */
+    @Parameter(property = "liquibase.sdk.sharedCacheDirectory")
+    protected String sharedCacheDirectory;
+
+    private SnapshotManifest loadedSnapshotManifest;
+
     protected GitHubClient createGitHubClient() throws IOException {
-        return new GitHubClient(githubToken, log);
+        GitHubClient.TransportType transportType;
+        try {
+            transportType = GitHubClient.TransportType.parse(httpTransport);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        GitHubClient github = new GitHubClient(githubToken, transportType, log);
+        github.setDownloadSegments(downloadSegments);
+        github.setMinSegmentSize(minSegmentSize);
+        if (StringUtils.trimToNull(recordBundle) != null && StringUtils.trimToNull(replayBundle) != null) {
+            throw new IOException("Cannot set both liquibase.sdk.recordBundle and liquibase.sdk.replayBundle");
+        }
+        if (StringUtils.trimToNull(recordBundle) != null) {
+            log.info("Recording GitHub requests in " + new File(recordBundle).getAbsolutePath());
+            github.setBundle(GitHubClient.BundleMode.RECORD, new File(recordBundle));
+        } else if (StringUtils.trimToNull(replayBundle) != null) {
+            log.info("Replaying GitHub requests from " + new File(replayBundle).getAbsolutePath());
+            github.setBundle(GitHubClient.BundleMode.REPLAY, new File(replayBundle));
+        }
+        return github;
     }
 
     /**
@@ -81,6 +180,128 @@ abstract class AbstractGitHubMojo extends AbstractMojo {
         return repos.get(0);
     }
 
+    /**
+     * Returns the build prefetched for the given repo and branch search, or null if there is no snapshotManifest or it has no entry for them.
+     */
+    protected SnapshotManifest.Entry getPrefetchedSnapshot(String repo, String branchSearch) throws IOException {
+        if (StringUtils.trimToNull(snapshotManifest) == null) {
+            return null;
+        }
+        if (loadedSnapshotManifest == null) {
+            loadedSnapshotManifest = SnapshotManifest.load(new File(snapshotManifest));
+        }
+        SnapshotManifest.Entry entry = loadedSnapshotManifest.get(repo, branchSearch);
+        if (entry == null) {
+            log.info("No prefetched build of " + branchSearch + " from " + repo + " in " + snapshotManifest);
+        }
+        return entry;
+    }
+
+    /**
+     * Name of the GitHub Actions artifact containing the jars built for the given branch label
+     */
+    protected static String getSnapshotArtifactName(String repo, String matchingLabel) {
+        if (repo.endsWith("/liquibase")) {
+            String headBranchFilename = matchingLabel.replaceFirst(".*:", "").replaceAll("[^a-zA-Z0-9\\-.]", "_");
+            return "liquibase-artifacts-" + headBranchFilename;
+        } else {
+            return repo.replaceFirst(".*/", "") + "-artifacts";
+        }
+    }
+
+    /**
+     * Name of the GitHub Actions artifact containing the CLI built for the given branch label
+     */
+    protected static String getCliArtifactName(String matchingLabel) {
+        String headBranchFilename = matchingLabel.replaceFirst(".*:", "").replaceAll("[^a-zA-Z0-9\\-_.]", "_");
+        return "liquibase-zip-" + headBranchFilename;
+    }
+
+    /**
+     * Returns the locks and download cache shared with other builds using the same sharedCacheDirectory.
+     */
+    protected FileLocks getSharedLocks() {
+        String directory = StringUtils.trimToNull(sharedCacheDirectory);
+        if (directory == null) {
+            File localRepository = mavenSession.getRepositorySession().getLocalRepository().getBasedir();
+            return new FileLocks(new File(localRepository, ".cache/liquibase-sdk"));
+        }
+        return new FileLocks(new File(directory));
+    }
+
+    /**
+     * Creates an installer for batched installs, or returns null if batchInstall is disabled.
+     */
+    protected ArtifactInstaller createArtifactInstaller() throws IOException {
+        if (!batchInstall) {
+            return null;
+        }
+        return new ArtifactInstaller(repositorySystem, mavenSession.getRepositorySession(), getSharedLocks());
+    }
+
+    /**
+     * Fetches jars concurrently and installs each one on the calling thread as soon as it is fetched.
+     * With an installer, jars are staged and installed in one batch once all are fetched, then deleted. Otherwise each
+     * jar is installed with maven-install-plugin and deleted afterwards.
+     * A MojoExecutionException from maven-install-plugin is thrown as-is rather than wrapped.
+     */
+    protected <T> void fetchAndInstall(Collection<T> items, ParallelUtil.Task<T, FetchedJar> fetcher, ArtifactInstaller installer) throws IOException, InstallationException, MojoExecutionException {
+        FileLocks locks = getSharedLocks();
+        List<FetchedJar> stagedJars = new ArrayList<>();
+        try {
+            try {
+                ParallelUtil.pipeline(items, downloadThreads, maxPendingDownloads, fetcher, new ParallelUtil.Consumer<FetchedJar>() {
+                    @Override
+                    public void accept(FetchedJar jar) throws Exception {
+                        log.info("Installing " + jar.name + "...");
+                        if (installer != null) {
+                            if (installer.addJar(jar.file, jar.name)) {
+                                stagedJars.add(jar);
+                                return;
+                            }
+                            log.debug(jar.name + " has no embedded pom.properties, installing with maven-install-plugin");
+                        }
+                        try (FileLocks.Lock ignored = locks.lock(ArtifactInstaller.getInstallLockKey(jar.name.replaceFirst("\\.jar$", "")))) {
+                            installToMavenCache(jar.file);
+                        }
+                        discard(jar);
+                    }
+
+                    @Override
+                    public void discard(FetchedJar jar) {
+                        jar.delete();
+                    }
+                });
+            } catch (IOException e) {
+                throw unwrapMojoExecutionException(e);
+            }
+
+            if (installer != null) {
+                installer.install();
+                log.debug("Installed " + installer.getArtifacts());
+            }
+        } finally {
+            for (FetchedJar jar : stagedJars) {
+                jar.delete();
+            }
+        }
+    }
+
+    /**
+     * ParallelUtil wraps checked exceptions from pipeline stages in an IOException. Returns the original
+     * MojoExecutionException if that is what the stage failed with, or throws the IOException otherwise.
+     */
+    private static MojoExecutionException unwrapMojoExecutionException(IOException e) throws IOException {
+        Throwable cause = e.getCause();
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof MojoExecutionException) {
+            return (MojoExecutionException) cause;
+        }
+        throw e;
+    }
+
     protected void installToMavenCache(File entryFile) throws MojoExecutionException {
         executeMojo(
                 plugin(
@@ -98,4 +319,28 @@ abstract class AbstractGitHubMojo extends AbstractMojo {
                 )
         );
     }
+
+    /**
+     * A jar fetched for {@link #fetchAndInstall(Collection, ParallelUtil.Task, ArtifactInstaller)}.
+     */
+    protected static class FetchedJar {
+        private final String name;
+        private final File file;
+
+        /**
+         * @param name the jar's published file name
+         * @param file a temp file with the jar's content
+         */
+        public FetchedJar(String name, File file) {
+            this.name = name;
+            this.file = file;
+            file.deleteOnExit();
+        }
+
+        private void delete() {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
 }
@@ -1,9 +1,16 @@
 package liquibase.sdk.maven.plugins;
 
+import liquibase.sdk.reversion.JarReversioner;
+import liquibase.sdk.reversion.ReleaseBuildState;
+import liquibase.sdk.reversion.SnapshotScanner;
+import liquibase.sdk.util.BudgetedBackingStoreSupplier;
+import liquibase.sdk.util.DigestUtil;
 import liquibase.sdk.util.GPGUtil;
-import org.apache.commons.codec.digest.DigestUtils;
+import liquibase.sdk.util.PGPSigner;
+import liquibase.sdk.util.ParallelUtil;
+import liquibase.sdk.util.ReproducibleZipWriter;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -12,23 +19,11 @@ import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileTime;
-import java.util.Date;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
 
 @Mojo(name = "create-release-artifacts", requiresProject = false)
 public class CreateReleaseArtifactsMojo extends AbstractMojo {
@@ -48,9 +43,99 @@ public class CreateReleaseArtifactsMojo extends AbstractMojo {
     @Parameter(property = "liquibase.sdk.gpgExecutable")
     protected String gpgExecutable;
 
+    /**
+     * Exported secret key (armored or binary) to sign with in-process. If not set, the external gpg executable is used.
+     */
+    @Parameter(property = "liquibase.sdk.gpgKeyFile")
+    protected String gpgKeyFile;
+
+    /**
+     * Key id or fingerprint to use from gpgKeyFile. Defaults to the first signing key.
+     */
+    @Parameter(property = "liquibase.sdk.gpgKeyId")
+    protected String gpgKeyId;
+
+    /**
+     * Number of files to hash and sign concurrently. Defaults to the number of available processors.
+     */
+    @Parameter(property = "liquibase.sdk.gpgThreads", defaultValue = "0")
+    protected int gpgThreads;
+
+    /**
+     * No longer used: jars are re-versioned without extracting them to the filesystem.
+     */
+    @Deprecated
     @Parameter(property = "liquibase.sdk.reversion.requireCaseSensitiveFilesystem", defaultValue = "true")
     protected boolean requireCaseSensitiveFilesystem;
 
+    /**
+     * Bytes of compressed entries to hold in memory while building archives. Anything above this is spilled to temp files.
+     * Set to 0 to always use temp files. Archives nested in the inputs that match nestedArchivePattern are not covered,
+     * they are always re-versioned in memory.
+     */
+    @Parameter(property = "liquibase.sdk.reversion.memoryBudget", defaultValue = "268435456")
+    protected long memoryBudget;
+
+    /**
+     * Number of input jars to re-version concurrently. Defaults to the number of available processors.
+     */
+    @Parameter(property = "liquibase.sdk.reversion.threads", defaultValue = "0")
+    protected int reversionThreads;
+
+    /**
+     * Comma separated checksums to create for each artifact. Supports md5, sha1, sha256 and sha512.
+     */
+    @Parameter(property = "liquibase.sdk.checksums", defaultValue = "md5,sha1")
+    protected String checksums;
+
+    /**
+     * If true, also write a SHA256SUMS file listing the SHA-256 of every signed artifact.
+     */
+    @Parameter(property = "liquibase.sdk.checksumManifest", defaultValue = "false")
+    protected boolean checksumManifest;
+
+    /**
+     * Comma separated strings that must not remain in re-versioned jars, in addition to "0-SNAPSHOT" and "0.0.0.SNAPSHOT".
+     */
+    @Parameter(property = "liquibase.sdk.reversion.forbiddenMarkers")
+    protected String forbiddenMarkers;
+
+    /**
+     * If true, keep track of completed work so a rerun only re-versions and signs what is missing or changed.
+     * The state is kept in outputDirectory/.liquibase-release-state.properties, so exclude that file when publishing
+     * outputDirectory.
+     */
+    @Parameter(property = "liquibase.sdk.reversion.incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    /**
+     * If true, "0-SNAPSHOT" versions compiled into class file string constants are replaced with newVersion.
+     * Otherwise they fail the build like any other remaining snapshot version.
+     */
+    @Parameter(property = "liquibase.sdk.reversion.rewriteClassConstants", defaultValue = "false")
+    protected boolean rewriteClassConstants;
+
+    /**
+     * Regular expression for the paths of archives inside zip and tar.gz inputs that should be re-versioned too.
+     * Defaults to {@link JarReversioner#DEFAULT_NESTED_ARCHIVE_PATTERN}, the Liquibase jars bundled in the CLI distributions.
+     * Set to "none" to copy all nested archives unchanged.
+     * Matching archives are re-versioned in memory, outside of memoryBudget.
+     */
+    @Parameter(property = "liquibase.sdk.reversion.nestedArchivePattern")
+    protected String nestedArchivePattern;
+
+    /**
+     * Deflate level from 0 (none) to 9 (best). Defaults to the standard zip level.
+     */
+    @Parameter(property = "liquibase.sdk.compressionLevel", defaultValue = "-1")
+    protected int compressionLevel;
+
+    /**
+     * If true, compress entries of the additional zip concurrently and assemble the archive afterwards.
+     */
+    @Parameter(property = "liquibase.sdk.parallelCompression", defaultValue = "true")
+    protected boolean parallelCompression;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (repo.contains(",")) {
@@ -64,6 +149,13 @@ public class CreateReleaseArtifactsMojo extends AbstractMojo {
             newVersion = newVersion.substring(1);
         }
 
+        Set<DigestUtil.Algorithm> checksumAlgorithms;
+        try {
+            checksumAlgorithms = DigestUtil.Algorithm.parseList(checksums);
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+
         try {
             File inputDirectory = new File(this.inputDirectory);
             if (!inputDirectory.exists()) {
@@ -73,288 +165,263 @@ public class CreateReleaseArtifactsMojo extends AbstractMojo {
             File outputDirectory = new File(this.outputDirectory);
             outputDirectory.mkdirs();
 
-            if (requireCaseSensitiveFilesystem) {
-                checkFileSystemCaseSensitivity();
+            File[] inputJarFiles = inputDirectory.listFiles(pathname -> pathname.getName().contains("0-SNAPSHOT")
+                    && (pathname.getName().endsWith(".jar") || pathname.getName().endsWith(".zip") || pathname.getName().endsWith(".tar.gz")));
+            if (inputJarFiles == null || inputJarFiles.length == 0) {
+                throw new MojoFailureException("Found no files to release");
             }
+            Arrays.sort(inputJarFiles);
 
-            File[] inputJarFiles = inputDirectory.listFiles(pathname -> pathname.getName().endsWith(".jar") && pathname.getName().contains("0-SNAPSHOT"));
-
-            int fixedFiles = 0;
-            for (File inputFile : inputJarFiles) {
-                fixedFiles++;
-                File outputFile = new File(outputDirectory, inputFile.getName().replace("0-SNAPSHOT", newVersion));
-                File workDir = File.createTempFile("liquibase-reversion-workdir-", ".dir");
-                workDir.delete();
-                workDir.mkdirs();
+            List<String> markers = new ArrayList<>(SnapshotScanner.DEFAULT_MARKERS);
+            if (forbiddenMarkers != null) {
+                markers.addAll(Arrays.asList(forbiddenMarkers.trim().split("\\s*,\\s*")));
+            }
+            JarReversioner reversioner = new JarReversioner(newVersion, new SnapshotScanner(markers));
+            reversioner.setCompressionLevel(compressionLevel);
+            reversioner.setRewriteClassConstants(rewriteClassConstants);
+            if ("none".equals(nestedArchivePattern)) {
+                reversioner.setNestedArchivePattern(null);
+            } else if (StringUtils.isNotBlank(nestedArchivePattern)) {
+                reversioner.setNestedArchivePattern(Pattern.compile(nestedArchivePattern));
+            }
 
-                getLog().info("Re-versioning " + inputFile.getAbsolutePath() + " to " + outputFile.getAbsolutePath());
+            File additionalZip = new File(outputDirectory, repo + "-additional-" + newVersion + ".zip");
+            ReleaseBuildState buildState = null;
+            boolean additionalZipValid = false;
+            if (incremental) {
+                buildState = ReleaseBuildState.load(outputDirectory, newVersion);
+                additionalZipValid = buildState.verifyBundle(additionalZip, additionalZip.exists() ? sha256(additionalZip) : null);
+            }
+            final ReleaseBuildState finalBuildState = buildState;
 
-                Map<String, FileTime> lastModified = new HashMap<>();
+            List<JarReversioner.Result> results = ParallelUtil.map(Arrays.asList(inputJarFiles), ParallelUtil.threadCount(reversionThreads),
+                    inputFile -> reversionJar(reversioner, inputFile, outputDirectory, finalBuildState));
 
-                extractAndFixJars(outputDirectory, inputFile, outputFile, workDir, lastModified);
-                rebuildJars(outputFile, workDir, lastModified);
+            checkForSnapshots(results);
 
-                cleanupWorkDir(workDir);
+            if (buildState != null) {
+                for (int i = 0; i < inputJarFiles.length; i++) {
+                    JarReversioner.Result result = results.get(i);
+                    if (result.getInputDigest() != null) {
+                        buildState.recordInput(inputJarFiles[i].getName(), result.getInputDigest(), result.getOutputDigests());
+                    }
+                }
+                buildState.save();
+            }
 
-                signFiles(outputDirectory);
+            Set<File> unsignedFiles = Collections.synchronizedSet(new LinkedHashSet<>());
+            for (JarReversioner.Result result : results) {
+                unsignedFiles.addAll(result.getCreatedFiles());
             }
 
-            if (fixedFiles == 0) {
-                throw new MojoFailureException("Found no files to release");
+            //sign everything once, before the signatures and checksums are bundled into the additional zip
+            try {
+                signFiles(unsignedFiles, checksumAlgorithms, outputDirectory, buildState);
+            } catch (IOException e) {
+                getLog().error("Files not signed: " + unsignedFiles);
+                throw e;
             }
 
-            createAdditionalZip(outputDirectory);
+            createAdditionalZip(additionalZip, outputDirectory, buildState, additionalZipValid);
 
-        } catch (MojoExecutionException | MojoFailureException e) {
+        } catch (MojoFailureException e) {
             throw e;
         } catch (IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
     }
 
-    private void createAdditionalZip(File outputDirectory) throws IOException {
-        File additionalFileObj = new File(outputDirectory, repo + "-additional-" + newVersion + ".zip");
-        getLog().info("Creating " + additionalFileObj.getAbsolutePath() + "...");
-        try (ZipOutputStream additionalFiles = new JarOutputStream(Files.newOutputStream(additionalFileObj.toPath()))) {
-            for (File file : outputDirectory.listFiles()) {
-                if (file.getName().contains("-sources")
-                        || file.getName().contains("-javadoc")
-                        || file.getName().endsWith(".asc")
-                        || file.getName().endsWith(".md5")
-                        || file.getName().endsWith(".sha1")
-                        || file.getName().endsWith(".pom")
-                ) {
-                    ZipEntry entry = new ZipEntry(file.getName());
-                    additionalFiles.putNextEntry(entry);
-                    try (InputStream fileContent = Files.newInputStream(file.toPath())) {
-                        IOUtils.copy(fileContent, additionalFiles);
+    /**
+     * Re-versions the given jar. If the build state shows the jar was already re-versioned and its outputs are unchanged, returns those outputs instead.
+     */
+    private JarReversioner.Result reversionJar(JarReversioner reversioner, File inputFile, File outputDirectory, ReleaseBuildState buildState) throws IOException {
+        String inputDigest = null;
+        if (buildState != null) {
+            inputDigest = sha256(inputFile);
+            List<File> existingOutputs = buildState.getOutputs(inputFile.getName(), inputDigest);
+            if (existingOutputs != null) {
+                boolean valid = true;
+                for (File output : existingOutputs) {
+                    //outputs bundled into an unchanged additional zip were deleted, but still count as created
+                    if (output.exists() ? !buildState.isOutputValid(output, sha256(output)) : !buildState.isBundled(output)) {
+                        valid = false;
+                        break;
                     }
-                    additionalFiles.closeEntry();
-                    file.delete();
+                }
+
+                if (valid) {
+                    getLog().info("Skipping " + inputFile.getName() + ": already re-versioned to " + newVersion);
+                    JarReversioner.Result result = new JarReversioner.Result();
+                    result.getCreatedFiles().addAll(existingOutputs);
+                    return result;
                 }
             }
         }
-    }
 
-    private static void rebuildJars(File outputFile, File workDir, Map<String, FileTime> lastModified) throws IOException {
-        Path workdirPath = workDir.toPath();
-
-        try (InputStream manifestStream = Files.newInputStream(workdirPath.resolve("META-INF/MANIFEST.MF"))) {
-            Manifest manifest = new Manifest(manifestStream);
-            try (JarOutputStream target = new JarOutputStream(Files.newOutputStream(outputFile.toPath()), manifest)) {
-                Files.walkFileTree(workdirPath, new FileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                        if (dir.equals(workdirPath)) {
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        String entryName = workdirPath.relativize(dir).toString().replace("\\", "/");
-                        FileTime fileModified = lastModified.get(entryName);
-                        if (fileModified == null) {
-                            fileModified = lastModified.get(entryName + "/");
-                        }
-                        if (fileModified == null) {
-                            fileModified = FileTime.fromMillis(new Date().getTime());
-                        }
-
-                        if (!entryName.endsWith("/")) { //jar directories have to end in /
-                            entryName = entryName + "/";
-                        }
-                        JarEntry entry = new JarEntry(entryName);
-                        entry.setTime(fileModified.toMillis());
-                        target.putNextEntry(entry);
-                        target.closeEntry();
-
-                        return FileVisitResult.CONTINUE;
-                    }
+        File outputFile = new File(outputDirectory, inputFile.getName().replace("0-SNAPSHOT", newVersion));
 
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        if (file.toString().endsWith("MANIFEST.MF")) {
-                            return FileVisitResult.CONTINUE;
-                        }
+        getLog().info("Re-versioning " + inputFile.getAbsolutePath() + " to " + outputFile.getAbsolutePath());
 
-                        String entryName = workdirPath.relativize(file).toString().replace("\\", "/");
+        JarReversioner.Result result = reversioner.reversion(inputFile, outputFile);
+        getLog().debug("Rewrote " + result.getRewrittenEntries() + " entries in " + outputFile.getName());
 
-                        JarEntry entry = new JarEntry(entryName);
-
-                        FileTime fileModified = lastModified.get(entryName);
-                        if (fileModified == null) {
-                            fileModified = FileTime.fromMillis(new Date().getTime());
-                        }
-
-                        entry.setTime(fileModified.toMillis());
-
-
-                        target.putNextEntry(entry);
-                        try (InputStream fileContent = Files.newInputStream(file)) {
-                            IOUtils.copy(fileContent, target);
-                        }
-                        target.closeEntry();
-
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    @Override
-                    public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-                        throw exc;
-                    }
-
-                    @Override
-                    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
-            }
+        if (result.getPom() != null && outputFile.getName().endsWith(".jar")
+                && !(inputFile.getName().contains("-javadoc-") || inputFile.getName().contains("-sources-"))) {
+            File outputPom = new File(outputDirectory, outputFile.getName().replace(".jar", ".pom"));
+            getLog().info("Extracting " + outputPom.getName());
+            Files.write(outputPom.toPath(), result.getPom());
+            result.getCreatedFiles().add(outputPom);
         }
-    }
-
-    private void extractAndFixJars(File outputDirectory, File inputFile, File outputFile, File workDir, Map<String, FileTime> lastModified) throws IOException, MojoFailureException {
-        try (ZipFile zipFile = new ZipFile(inputFile)) {
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                lastModified.put(entry.getName().replace("\\", "/"), entry.getLastModifiedTime());
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                File outFile = new File(workDir, entry.getName());
-                outFile.getParentFile().mkdirs();
-                try (InputStream in = zipFile.getInputStream(entry);
-                     OutputStream out = Files.newOutputStream(outFile.toPath())) {
-                    IOUtils.copy(in, out);
-                }
-
-                if (entry.getName().equals("META-INF/MANIFEST.MF")) {
-                    fixManifest(outFile);
-                } else if (entry.getName().endsWith("/pom.xml")
-                        || entry.getName().endsWith("/pom.properties")
-                        || entry.getName().matches("/plugin.*\\.xml")
-                        || entry.getName().endsWith(".html")
-                        || entry.getName().endsWith(".xml")
-                ) {
-                    simpleSnapshotReplace(outFile);
-                } else if (entry.getName().endsWith("liquibase.build.properties")) {
-                    fixBuildProperties(outFile);
-                }
 
-                checkForSnapshot(outFile);
-
-                if (entry.getName().endsWith("/pom.xml") && !(inputFile.getName().contains("-javadoc-") || inputFile.getName().contains("-sources-"))) {
-                    String outputPomName = outputFile.getName().replace(".jar", ".pom");
-                    getLog().info("Extracting " + outputPomName);
-                    Files.copy(outFile.toPath(), Paths.get(outputDirectory.getAbsolutePath(), outputPomName), StandardCopyOption.REPLACE_EXISTING);
-                }
+        if (buildState != null) {
+            result.setInputDigest(inputDigest);
+            for (File createdFile : result.getCreatedFiles()) {
+                result.getOutputDigests().put(createdFile, sha256(createdFile));
             }
         }
+
+        return result;
     }
 
-    private void signFiles(File outputDirectory) throws IOException {
-        File[] filesToSign = outputDirectory.listFiles(pathname -> !pathname.getName().endsWith(".md5") && !pathname.getName().endsWith(".sha1") && !pathname.getName().endsWith(".asc"));
+    private static String sha256(File file) throws IOException {
+        return DigestUtil.digest(file, Collections.singleton(DigestUtil.Algorithm.SHA256)).get(DigestUtil.Algorithm.SHA256);
+    }
 
-        if (filesToSign == null) {
-            throw new IOException("Cannot list files in " + outputDirectory.getAbsolutePath());
+    /**
+     * Fails with a report of every snapshot version left in any of the re-versioned jars.
+     */
+    private void checkForSnapshots(List<JarReversioner.Result> results) throws MojoFailureException {
+        List<SnapshotScanner.Finding> findings = new ArrayList<>();
+        for (JarReversioner.Result result : results) {
+            findings.addAll(result.getSnapshotFindings());
+        }
+        if (findings.isEmpty()) {
+            return;
         }
 
-        for (File file : filesToSign) {
-            try (InputStream content = Files.newInputStream(file.toPath())) {
-                File md5File = new File(file.getAbsoluteFile() + ".md5");
-                FileUtils.write(md5File, DigestUtils.md5Hex(content), StandardCharsets.UTF_8);
-                getLog().info("Created " + md5File);
-            }
-
-            try (InputStream content = Files.newInputStream(file.toPath())) {
-                File sha1File = new File(file.getAbsoluteFile() + ".sha1");
-                FileUtils.write(sha1File, DigestUtils.sha1Hex(content), StandardCharsets.UTF_8);
-                getLog().info("Created " + sha1File);
-            }
-
-            getLog().info("Signing " + file.getAbsolutePath());
-            GPGUtil.sign(file.getAbsolutePath(), gpgExecutable);
+        StringBuilder report = new StringBuilder("Found " + findings.size() + " snapshot version(s) in re-versioned files:");
+        for (SnapshotScanner.Finding finding : findings) {
+            report.append("\n  ").append(finding);
         }
+        throw new MojoFailureException(report.toString());
     }
 
-
-    private void checkForSnapshot(File outFile) throws IOException, MojoFailureException {
-        try (InputStream input = Files.newInputStream(outFile.toPath())) {
-            String content = IOUtils.toString(input, StandardCharsets.UTF_8);
-
-            if (content.contains("0-SNAPSHOT")) {
-                throw new MojoFailureException(outFile.getAbsolutePath() + " still contains 0-SNAPSHOT");
-            }
-            if (content.contains("0.0.0.SNAPSHOT")) {
-                throw new MojoFailureException(outFile.getAbsolutePath() + " still contains 0.0.0.SNAPSHOT");
+    /**
+     * Moves the sources, javadoc, poms, signatures and checksums in the output directory into the additional zip.
+     * The zip is reproducible, see {@link ReproducibleZipWriter}.
+     * If the build state shows the existing zip is unchanged, its entries that were not re-created are carried over,
+     * and the zip is left alone if nothing was re-created. The zip is recorded in the build state before the bundled
+     * files are deleted, so a rerun still sees them as created.
+     */
+    private void createAdditionalZip(File additionalFileObj, File outputDirectory, ReleaseBuildState buildState, boolean reuseExisting) throws IOException {
+        List<File> filesToAdd = new ArrayList<>();
+        for (File file : outputDirectory.listFiles()) {
+            if (file.getName().contains("-sources")
+                    || file.getName().contains("-javadoc")
+                    || file.getName().endsWith(".asc")
+                    || file.getName().endsWith(".md5")
+                    || file.getName().endsWith(".sha1")
+                    || file.getName().endsWith(".sha256")
+                    || file.getName().endsWith(".sha512")
+                    || file.getName().endsWith(".pom")
+            ) {
+                filesToAdd.add(file);
             }
         }
-    }
-
-    private void simpleSnapshotReplace(File outFile) throws IOException {
-        try (InputStream input = Files.newInputStream(outFile.toPath())) {
-            String content = IOUtils.toString(input, StandardCharsets.UTF_8);
 
-            content = content.replaceAll("([^.])0-SNAPSHOT", "$1" + newVersion);
-
-            FileUtils.write(outFile, content, StandardCharsets.UTF_8);
+        if (reuseExisting && filesToAdd.isEmpty()) {
+            getLog().info("Skipping " + additionalFileObj.getName() + ": already created");
+            return;
         }
-    }
-
-    private void fixBuildProperties(File outFile) throws IOException {
-        try (InputStream input = Files.newInputStream(outFile.toPath())) {
-            String content = IOUtils.toString(input, StandardCharsets.UTF_8);
-
-            content = content.replaceAll("build.version=.*", "build.version=" + newVersion);
+        getLog().info("Creating " + additionalFileObj.getAbsolutePath() + "...");
 
-            FileUtils.write(outFile, content, StandardCharsets.UTF_8);
+        File tempFile = new File(additionalFileObj.getAbsolutePath() + ".tmp");
+        ReproducibleZipWriter zipWriter = new ReproducibleZipWriter(compressionLevel);
+        BudgetedBackingStoreSupplier backingStoreSupplier = null;
+        if (parallelCompression) {
+            backingStoreSupplier = new BudgetedBackingStoreSupplier(memoryBudget, null);
+            zipWriter.setParallelCompression(backingStoreSupplier, ParallelUtil.threadCount(reversionThreads));
         }
-    }
-
-    private void fixManifest(File outFile) throws IOException {
-        Manifest manifest;
-        try (InputStream input = Files.newInputStream(outFile.toPath())) {
-            manifest = new Manifest(input);
+        Set<String> bundledNames = zipWriter.write(tempFile, filesToAdd, reuseExisting ? additionalFileObj : null);
+        if (backingStoreSupplier != null && backingStoreSupplier.getSpilledBytes() > 0) {
+            getLog().info("Spilled " + backingStoreSupplier.getSpilledBytes() + " bytes above the " + memoryBudget + " byte memory budget to temp files");
         }
-        final Attributes attributes = manifest.getMainAttributes();
+        Files.move(tempFile.toPath(), additionalFileObj.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
-        attributes.putValue("Liquibase-Version", newVersion);
-
-        final String bundleVersion = attributes.getValue("Bundle-Version");
-        if (bundleVersion != null) {
-            attributes.putValue("Bundle-Version", newVersion);
+        if (buildState != null) {
+            buildState.recordBundle(additionalFileObj, sha256(additionalFileObj), bundledNames);
+            buildState.save();
         }
 
-        final String importPackage = attributes.getValue("Import-Package");
-        if (importPackage != null) {
-            attributes.putValue("Import-Package", importPackage.replaceAll("version=\"\\[0\\.0,1\\)\"", "version=\"" + newVersion + "\""));
+        for (File file : filesToAdd) {
+            file.delete();
         }
+    }
 
-        final String exportPackage = attributes.getValue("Export-Package");
-        if (exportPackage != null) {
-            attributes.putValue("Export-Package", exportPackage.replaceAll(";version=\"0\\.0\\.0\"", ";version=\"" + newVersion + "\""));
+    /**
+     * Creates checksums and a signature for each of the given files, in parallel. Files are removed from the set as they are signed,
+     * so on failure the set contains only what still needs signing. The set must be thread-safe.
+     * Files the build state shows as already signed are skipped.
+     */
+    private void signFiles(Set<File> unsignedFiles, Set<DigestUtil.Algorithm> checksumAlgorithms, File outputDirectory, ReleaseBuildState buildState) throws IOException {
+        Set<DigestUtil.Algorithm> digestAlgorithms = EnumSet.noneOf(DigestUtil.Algorithm.class);
+        digestAlgorithms.addAll(checksumAlgorithms);
+        if (checksumManifest) {
+            digestAlgorithms.add(DigestUtil.Algorithm.SHA256);
         }
 
-        try (OutputStream out = Files.newOutputStream(outFile.toPath())) {
-            manifest.write(out);
+        PGPSigner pgpSigner = null;
+        if (gpgKeyFile != null) {
+            pgpSigner = PGPSigner.load(new File(gpgKeyFile), gpgKeyId, GPGUtil.getPassphrase());
         }
+        final PGPSigner finalPgpSigner = pgpSigner;
 
-    }
+        Map<String, String> sha256Sums = Collections.synchronizedMap(new TreeMap<>());
+        Set<File> filesToSign = new LinkedHashSet<>(unsignedFiles);
 
-    private void cleanupWorkDir(File workDir) {
-        try {
-            FileUtils.deleteDirectory(workDir);
-        } catch (IOException e) {
-            getLog().warn("Cannot delete " + workDir);
+        List<String> checksumExtensions = new ArrayList<>();
+        for (DigestUtil.Algorithm algorithm : checksumAlgorithms) {
+            checksumExtensions.add(algorithm.getExtension());
         }
-    }
 
-    private static void checkFileSystemCaseSensitivity() throws MojoExecutionException, IOException {
-        File tempFile = File.createTempFile("liquibase-case-test-", ".TMP");
-        tempFile.deleteOnExit();
+        ParallelUtil.map(filesToSign, ParallelUtil.threadCount(gpgThreads), file -> {
+            if (buildState != null && buildState.isSigned(file, checksumExtensions)) {
+                getLog().info("Skipping " + file.getName() + ": already signed");
+                sha256Sums.put(file.getName(), buildState.getOutputDigest(file));
+                unsignedFiles.remove(file);
+                return null;
+            }
 
-        File otherCaseFile = new File(tempFile.getAbsolutePath().replace(".TMP", ".tmp"));
+            Map<DigestUtil.Algorithm, String> digests = DigestUtil.digest(file, digestAlgorithms);
+            for (DigestUtil.Algorithm algorithm : checksumAlgorithms) {
+                File checksumFile = new File(file.getAbsoluteFile() + "." + algorithm.getExtension());
+                FileUtils.write(checksumFile, digests.get(algorithm), StandardCharsets.UTF_8);
+                getLog().info("Created " + checksumFile);
+            }
+            sha256Sums.put(file.getName(), digests.get(DigestUtil.Algorithm.SHA256));
 
-        if (otherCaseFile.exists()) {
-            throw new MojoExecutionException("reversion-jar requires a case sensitive filesystem");
+            getLog().info("Signing " + file.getAbsolutePath());
+            if (finalPgpSigner == null) {
+                GPGUtil.sign(file.getAbsolutePath(), gpgExecutable);
+            } else {
+                finalPgpSigner.sign(file);
+            }
+            unsignedFiles.remove(file);
+            if (buildState != null) {
+                buildState.recordSigned(file);
+                buildState.save();
+            }
+            return null;
+        });
+
+        if (checksumManifest) {
+            File manifestFile = new File(outputDirectory, "SHA256SUMS");
+            StringBuilder manifest = new StringBuilder();
+            for (Map.Entry<String, String> entry : sha256Sums.entrySet()) {
+                manifest.append(entry.getValue()).append("  ").append(entry.getKey()).append("\n");
+            }
+            FileUtils.write(manifestFile, manifest.toString(), StandardCharsets.UTF_8);
+            getLog().info("Created " + manifestFile);
         }
     }
 }
@@ -10,10 +10,10 @@ import org.kohsuke.github.GHAsset;
 import org.kohsuke.github.GHRelease;
 
 import java.io.File;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 
 @Mojo(name = "download-release-artifacts", requiresProject = false)
@@ -44,22 +44,19 @@ public class DownloadReleaseArtifactsMojo extends AbstractGitHubMojo {
                 log.debug("No releases in liquibase-pro");
                 continue;
             }
-            try {
-                GitHubClient github = new GitHubClient(githubToken, log);
-
+            try (GitHubClient github = createGitHubClient()) {
                 GHRelease release = github.getRelease(repo, releaseTag);
                 if (release == null) {
                     throw new MojoFailureException("Cannot find release " + releaseTag + " in " + repo);
                 }
 
-                for (GHAsset asset : release.listAssets()) {
+                List<GHAsset> releaseAssets = release.listAssets().toList();
+                for (GHAsset asset : releaseAssets) {
                     if (ArchiveUtil.filenameMatches(asset.getName(), artifactPattern)) {
                         Path finalPath = new File(downloadDirectory, asset.getName()).toPath().normalize().toAbsolutePath();
                         log.info("Downloading " + finalPath + "...");
 
-                        final URL url = new URL(asset.getBrowserDownloadUrl());
-
-                        File tempFile = github.downloadArtifact(url);
+                        File tempFile = github.downloadAsset(asset, releaseAssets);
                         Files.move(tempFile.toPath(), finalPath, StandardCopyOption.REPLACE_EXISTING);
                         downloaded++;
                     } else {
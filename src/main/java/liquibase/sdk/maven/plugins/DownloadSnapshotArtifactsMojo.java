@@ -2,6 +2,8 @@ package liquibase.sdk.maven.plugins;
 
 import liquibase.sdk.github.GitHubClient;
 import liquibase.sdk.util.ArchiveUtil;
+import liquibase.sdk.util.ParallelUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -18,7 +20,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -32,6 +39,15 @@ public class DownloadSnapshotArtifactsMojo extends AbstractGitHubMojo {
     @Parameter(property = "liquibase.sdk.branchSearch", defaultValue = "master")
     protected String branchSearch;
 
+    /**
+     * Branch searches to download, separated by semicolons. When set, branchSearch is ignored and each branch search's
+     * artifacts are placed in a subdirectory of downloadDirectory named after it, prefixed with the repo when several
+     * repos are configured. Artifacts of runs found by several branch searches are downloaded once and hard linked into
+     * each subdirectory.
+     */
+    @Parameter(property = "liquibase.sdk.branches")
+    protected String branches;
+
     @Parameter(property = "liquibase.sdk.skipFailedBuilds", defaultValue = "false")
     protected Boolean skipFailedBuilds;
 
@@ -55,82 +71,232 @@ public class DownloadSnapshotArtifactsMojo extends AbstractGitHubMojo {
         File downloadDirectory = new File(this.downloadDirectory);
         downloadDirectory.mkdirs();
 
-        int downloaded = 0;
+        boolean matrix = StringUtils.trimToNull(branches) != null;
+        List<String> branchSearches = new ArrayList<>();
+        if (matrix) {
+            for (String search : branches.split(";")) {
+                if (StringUtils.trimToNull(search) != null) {
+                    branchSearches.add(search.trim());
+                }
+            }
+        } else {
+            branchSearches.add(branchSearch);
+        }
+
+        List<String[]> searches = new ArrayList<>();
         for (String repo : getRepos()) {
-            log.info("Looking for " + branchSearch + " from a run in " + repo);
+            for (String search : branchSearches) {
+                searches.add(new String[]{repo, search});
+            }
+        }
 
-            try {
-                GitHubClient github = new GitHubClient(githubToken, log);
+        File stagingDirectory = null;
+        try (GitHubClient github = createGitHubClient()) {
+            List<ResolvedSearch> resolvedSearches = ParallelUtil.map(searches, downloadThreads, search -> resolve(github, search[0], search[1]));
+            for (ResolvedSearch resolved : resolvedSearches) {
+                if (resolved.matchingLabel == null) {
+                    throw new MojoFailureException("Could not find matching branch(es): " + resolved.branchSearch + " in " + resolved.repo);
+                }
+            }
 
-                String matchingLabel = github.findMatchingBranch(repo, branchSearch);
-                if (matchingLabel == null) {
-                    throw new MojoFailureException("Could not find matching branch(es): " + branchSearch + " in " + repo);
+            boolean includeRepo = getRepos().size() > 1;
+            Map<Long, GHArtifact> distinctArtifacts = getDistinctArtifacts(resolvedSearches, downloadDirectory.toPath(), matrix, includeRepo);
+
+            File artifactDirectory = downloadDirectory;
+            if (matrix) {
+                //stage in the download directory so the per-branch copies can be hard links
+                stagingDirectory = Files.createTempDirectory(downloadDirectory.toPath(), ".artifacts-").toFile();
+            }
+            File finalStagingDirectory = stagingDirectory;
+            Map<Long, Path> downloadedArtifacts = new HashMap<>();
+            List<Path> downloadedPaths = ParallelUtil.map(distinctArtifacts.values(), downloadThreads, artifact -> {
+                File directory = artifactDirectory;
+                if (finalStagingDirectory != null) {
+                    directory = new File(finalStagingDirectory, String.valueOf(artifact.getId()));
+                    directory.mkdirs();
                 }
-                log.info("Found matching branch: " + matchingLabel);
+                return download(github, artifact, directory);
+            });
+            int i = 0;
+            for (GHArtifact artifact : distinctArtifacts.values()) {
+                downloadedArtifacts.put(artifact.getId(), downloadedPaths.get(i++));
+            }
+
+            int downloaded = 0;
+            for (ResolvedSearch resolved : resolvedSearches) {
+                for (GHArtifact artifact : resolved.artifacts) {
+                    if (matrix) {
+                        Path source = downloadedArtifacts.get(artifact.getId());
+                        Path branchDirectory = getArtifactDirectory(downloadDirectory.toPath(), resolved, true, includeRepo);
+                        log.info("Linking " + source.getFileName() + " into " + branchDirectory + "...");
+                        ArchiveUtil.linkOrCopy(source, branchDirectory.resolve(source.getFileName().toString()));
 
-                GHWorkflowRun runToDownload = null;
-                if (StringUtils.trimToNull(runId) == null) {
-                    runToDownload = github.findLastBuild(repo, new GitHubClient.BuildFilter(repo, matchingLabel, skipFailedBuilds), GitHubClient.getWorkflowId(repo, workflowId));
-                } else {
-                    runToDownload = github.findBuild(repo, Long.parseLong(runId));
+                        Path unzipDirectory = getUnzipDirectory(source);
+                        if (unzipArtifacts && Files.isDirectory(unzipDirectory)) {
+                            ArchiveUtil.linkOrCopy(unzipDirectory, branchDirectory.resolve(unzipDirectory.getFileName().toString()));
+                        }
+                    }
+                    downloaded++;
                 }
+            }
+
+            if (downloaded == 0) {
+                throw new MojoFailureException("Did not find any matching artifacts");
+            }
+        } catch (MojoFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            if (stagingDirectory != null) {
+                FileUtils.deleteQuietly(stagingDirectory);
+            }
+        }
+    }
 
-                if (runToDownload == null) {
-                    throw new IOException("Could not find successful build for branch " + matchingLabel);
+    /**
+     * Returns the artifacts to download by id, so artifacts of runs found by several branch searches are only downloaded
+     * once. Fails if different artifacts would end up at the same path, such as same-named artifacts from several repos
+     * without branches set.
+     */
+    Map<Long, GHArtifact> getDistinctArtifacts(List<ResolvedSearch> resolvedSearches, Path downloadDirectory, boolean matrix, boolean includeRepo) throws MojoFailureException {
+        Map<Long, GHArtifact> distinctArtifacts = new LinkedHashMap<>();
+        Map<Path, GHArtifact> targets = new HashMap<>();
+        for (ResolvedSearch resolved : resolvedSearches) {
+            for (GHArtifact artifact : resolved.artifacts) {
+                Path target = getArtifactDirectory(downloadDirectory, resolved, matrix, includeRepo).resolve(getFinalArtifactName(artifact));
+                GHArtifact existing = targets.putIfAbsent(target, artifact);
+                if (existing != null && existing.getId() != artifact.getId()) {
+                    throw new MojoFailureException("Artifact " + artifact.getName() + " for " + resolved.branchSearch + " in " + resolved.repo + " would overwrite a different artifact at " + target);
                 }
 
-                log.info("Downloading artifacts in build #" + runToDownload.getRunNumber() + " originally ran at " + DateFormat.getDateTimeInstance().format(runToDownload.getCreatedAt()) + " -- " + runToDownload.getHtmlUrl());
+                if (distinctArtifacts.putIfAbsent(artifact.getId(), artifact) != null) {
+                    log.info("Reusing " + artifact.getName() + " from build #" + resolved.run.getRunNumber() + " for " + resolved.branchSearch);
+                }
+            }
+        }
+        return distinctArtifacts;
+    }
 
-                for (GHArtifact artifact : runToDownload.listArtifacts()) {
-                    String finalArtifactName = artifact.getName();
-                    if (!finalArtifactName.endsWith(".zip")) {
-                        finalArtifactName = finalArtifactName + ".zip";
-                    }
+    /**
+     * Returns the directory the search's artifacts end up in: downloadDirectory, or its subdirectory for the branch search in matrix mode.
+     */
+    private static Path getArtifactDirectory(Path downloadDirectory, ResolvedSearch resolved, boolean matrix, boolean includeRepo) {
+        Path directory = downloadDirectory;
+        if (matrix) {
+            directory = directory.resolve(getBranchDirectoryName(resolved.repo, resolved.branchSearch, includeRepo));
+        }
+        return directory.normalize().toAbsolutePath();
+    }
+
+    /**
+     * Finds the run to download for the given branch search, and which of its artifacts match the artifactPattern.
+     * Returns a result without a matchingLabel if no branch matches.
+     */
+    private ResolvedSearch resolve(GitHubClient github, String repo, String branchSearch) throws IOException {
+        log.info("Looking for " + branchSearch + " from a run in " + repo);
 
-                    if (ArchiveUtil.filenameMatches(artifact.getName(), artifactPattern) || ArchiveUtil.filenameMatches(finalArtifactName, artifactPattern)) {
-                        Path finalPath = new File(downloadDirectory, finalArtifactName).toPath().normalize().toAbsolutePath();
-                        log.info("Downloading " + finalPath + "...");
+        ResolvedSearch resolved = new ResolvedSearch(repo, branchSearch);
+        resolved.matchingLabel = github.findMatchingBranch(repo, branchSearch);
+        if (resolved.matchingLabel == null) {
+            return resolved;
+        }
+        log.info("Found matching branch: " + resolved.matchingLabel);
 
-                        final URL url = artifact.getArchiveDownloadUrl();
+        if (StringUtils.trimToNull(runId) == null) {
+            resolved.run = github.findLastBuild(repo, new GitHubClient.BuildFilter(repo, resolved.matchingLabel, skipFailedBuilds), GitHubClient.getWorkflowId(repo, workflowId));
+        } else {
+            resolved.run = github.findBuild(repo, Long.parseLong(runId));
+        }
 
-                        File tempFile = github.downloadArtifact(url);
-                        Files.move(tempFile.toPath(), finalPath, StandardCopyOption.REPLACE_EXISTING);
+        if (resolved.run == null) {
+            throw new IOException("Could not find successful build for branch " + resolved.matchingLabel);
+        }
 
-                        if (unzipArtifacts) {
-                            if (!finalPath.toString().endsWith(".zip")) {
-                                log.debug("Not unzipping " + finalPath);
-                            }
-                            Path unzipDirectory = Paths.get(finalPath.toString().replaceFirst(".zip$", ""));
-                            log.info("Unzipping to  " + unzipDirectory + "...");
-                            try (ZipFile zipFile = new ZipFile(finalPath.toFile(), ZipFile.OPEN_READ)) {
-                                Enumeration<? extends ZipEntry> entries = zipFile.entries();
-                                while (entries.hasMoreElements()) {
-                                    ZipEntry entry = entries.nextElement();
-                                    Path entryPath = unzipDirectory.resolve(entry.getName());
-                                    if (!entry.isDirectory()) {
-                                        Files.createDirectories(entryPath.getParent());
-                                        try (InputStream in = zipFile.getInputStream(entry)) {
-                                            try (OutputStream out = Files.newOutputStream(entryPath.toFile().toPath())) {
-                                                IOUtils.copy(in, out);
-                                            }
-                                        }
-                                    }
-                                }
+        log.info("Downloading artifacts in build #" + resolved.run.getRunNumber() + " originally ran at " + DateFormat.getDateTimeInstance().format(resolved.run.getCreatedAt()) + " -- " + resolved.run.getHtmlUrl());
+
+        for (GHArtifact artifact : resolved.run.listArtifacts()) {
+            if (ArchiveUtil.filenameMatches(artifact.getName(), artifactPattern) || ArchiveUtil.filenameMatches(getFinalArtifactName(artifact), artifactPattern)) {
+                resolved.artifacts.add(artifact);
+            } else {
+                log.debug("Not downloading " + artifact.getName());
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Downloads the artifact into the given directory, unzipping it if unzipArtifacts is set, and returns the downloaded file.
+     */
+    private Path download(GitHubClient github, GHArtifact artifact, File directory) throws IOException {
+        Path finalPath = new File(directory, getFinalArtifactName(artifact)).toPath().normalize().toAbsolutePath();
+        log.info("Downloading " + finalPath + "...");
+
+        final URL url = artifact.getArchiveDownloadUrl();
+
+        File tempFile = github.downloadArtifact(url);
+        Files.move(tempFile.toPath(), finalPath, StandardCopyOption.REPLACE_EXISTING);
+
+        if (unzipArtifacts) {
+            if (!finalPath.toString().endsWith(".zip")) {
+                log.debug("Not unzipping " + finalPath);
+            }
+            Path unzipDirectory = getUnzipDirectory(finalPath);
+            log.info("Unzipping to  " + unzipDirectory + "...");
+            try (ZipFile zipFile = new ZipFile(finalPath.toFile(), ZipFile.OPEN_READ)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    Path entryPath = unzipDirectory.resolve(entry.getName());
+                    if (!entry.isDirectory()) {
+                        Files.createDirectories(entryPath.getParent());
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            try (OutputStream out = Files.newOutputStream(entryPath.toFile().toPath())) {
+                                IOUtils.copy(in, out);
                             }
                         }
-                        downloaded++;
-                    } else {
-                        log.debug("Not downloading " + artifact.getName());
                     }
                 }
-            } catch (MojoFailureException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new MojoExecutionException(e.getMessage(), e);
             }
         }
-        if (downloaded == 0) {
-            throw new MojoFailureException("Did not find any matching artifacts");
+        return finalPath;
+    }
+
+    private static String getFinalArtifactName(GHArtifact artifact) {
+        String finalArtifactName = artifact.getName();
+        if (!finalArtifactName.endsWith(".zip")) {
+            finalArtifactName = finalArtifactName + ".zip";
+        }
+        return finalArtifactName;
+    }
+
+    private static Path getUnzipDirectory(Path zipFile) {
+        return Paths.get(zipFile.toString().replaceFirst(".zip$", ""));
+    }
+
+    /**
+     * Returns the subdirectory used for a branch search's artifacts. Characters other than letters, digits, '.', '_'
+     * and '-' are replaced with '_', so `fork-owner:branch,master` uses `fork-owner_branch_master`, or
+     * `liquibase_liquibase-pro_fork-owner_branch_master` for liquibase/liquibase-pro if includeRepo is set.
+     */
+    static String getBranchDirectoryName(String repo, String branchSearch, boolean includeRepo) {
+        String name = branchSearch;
+        if (includeRepo) {
+            name = repo + "/" + name;
+        }
+        return name.replaceAll("\\s", "").replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    static class ResolvedSearch {
+        private final String repo;
+        private final String branchSearch;
+        private String matchingLabel;
+        private GHWorkflowRun run;
+        private final List<GHArtifact> artifacts = new ArrayList<>();
+
+        ResolvedSearch(String repo, String branchSearch) {
+            this.repo = repo;
+            this.branchSearch = branchSearch;
         }
     }
 }
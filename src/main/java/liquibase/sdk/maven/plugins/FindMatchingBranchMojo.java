@@ -27,9 +27,7 @@ public class FindMatchingBranchMojo extends AbstractGitHubMojo {
         String repo = getRepo();
         log.info("Looking for " + branchSearch + " in " + repo);
 
-        try {
-            GitHubClient github = createGitHubClient();
-
+        try (GitHubClient github = createGitHubClient()) {
             final String matchedLabel = github.findMatchingBranch(repo, this.branchSearch.split("\\s*,\\s*"));
             log.info("Found matching branch " + matchedLabel);
         } catch (Exception e) {
@@ -24,9 +24,11 @@ public class GetBuildInfoMojo extends AbstractGitHubMojo {
 
     public void execute() throws MojoExecutionException {
         try {
-            GitHubClient github = createGitHubClient();
-
-            final Properties buildInfo = github.getInstalledBuildProperties(getRepo());
+            //only reads the installed jar, so it works offline and without a github token
+            final Properties buildInfo = GitHubClient.readInstalledBuildProperties(getRepo(), log);
+            if (buildInfo == null) {
+                throw new MojoExecutionException("Installed " + getRepo() + " 0-SNAPSHOT jar has no liquibase.build.properties");
+            }
             buildInfo.put("overview", "OSS: " + buildInfo.get("build.branch") + "::" + buildInfo.get("build.commit") + " @ " + buildInfo.get("build.timestamp") +
                     " " +
                     "Pro: " + buildInfo.get("build.pro.branch") + "::" + buildInfo.get("build.pro.commit") + " @ " + buildInfo.get("build.pro.timestamp"))
@@ -46,6 +48,8 @@ public class GetBuildInfoMojo extends AbstractGitHubMojo {
             } else {
                 System.out.println(buildInfo.get(outputKey));
             }
+        } catch (MojoExecutionException e) {
+            throw e;
         } catch (Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
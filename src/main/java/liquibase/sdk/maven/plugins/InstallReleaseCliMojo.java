@@ -10,7 +10,7 @@ import org.kohsuke.github.GHAsset;
 import org.kohsuke.github.GHRelease;
 
 import java.io.File;
-import java.net.URL;
+import java.util.List;
 
 
 /**
@@ -58,9 +58,7 @@ public class InstallReleaseCliMojo extends AbstractGitHubMojo {
                 continue;
             }
 
-            try {
-                GitHubClient github = new GitHubClient(githubToken, log);
-
+            try (GitHubClient github = createGitHubClient()) {
                 GHRelease release = github.getRelease(repo, releaseTag);
                 if (release == null) {
                     throw new MojoFailureException("Cannot find release " + releaseTag + " in " + repo);
@@ -68,7 +66,8 @@ public class InstallReleaseCliMojo extends AbstractGitHubMojo {
 
                 String wantedAsset = "liquibase-" + version + ".zip";
                 GHAsset zipAsset = null;
-                for (GHAsset asset : release.listAssets()) {
+                List<GHAsset> releaseAssets = release.listAssets().toList();
+                for (GHAsset asset : releaseAssets) {
                     if (asset.getName().equals(wantedAsset)) {
                         zipAsset = asset;
                     } else {
@@ -80,7 +79,7 @@ public class InstallReleaseCliMojo extends AbstractGitHubMojo {
                     throw new MojoFailureException("Could not find " + wantedAsset);
                 }
 
-                File file = github.downloadArtifact(new URL(zipAsset.getBrowserDownloadUrl()));
+                File file = github.downloadAsset(zipAsset, releaseAssets);
                 ArchiveUtil.unzipCli(file, liquibaseHomeDir, log, null, null);
             } catch (Exception e) {
                 throw new MojoExecutionException(e.getMessage(), e);
@@ -1,6 +1,7 @@
 package liquibase.sdk.maven.plugins;
 
 import liquibase.sdk.github.GitHubClient;
+import liquibase.sdk.util.ArtifactInstaller;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -8,7 +9,8 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.kohsuke.github.GHAsset;
 import org.kohsuke.github.GHRelease;
 
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 @Mojo(name = "install-release", requiresProject = false)
 public class InstallReleaseMojo extends AbstractGitHubMojo {
@@ -26,18 +28,25 @@ public class InstallReleaseMojo extends AbstractGitHubMojo {
 
             log.info("Installing release from " + repo);
 
-            try {
-                GitHubClient github = new GitHubClient(githubToken, log);
+            try (ArtifactInstaller installer = createArtifactInstaller();
+                 GitHubClient github = createGitHubClient()) {
                 GHRelease release = github.getRelease(repo, releaseTag);
-                for (GHAsset asset : release.listAssets()) {
+                List<GHAsset> releaseAssets = release.listAssets().toList();
+                List<GHAsset> jarAssets = new ArrayList<>();
+                for (GHAsset asset : releaseAssets) {
                     if (!asset.getName().endsWith(".jar")) {
                         log.debug("Not installing " + asset.getName());
                         continue;
                     }
-
-                    log.info("Installing " + asset.getName() + "...");
-                    installToMavenCache(github.downloadArtifact(new URL(asset.getBrowserDownloadUrl())));
+                    jarAssets.add(asset);
                 }
+
+                fetchAndInstall(jarAssets, asset -> {
+                    log.info("Downloading " + asset.getName() + "...");
+                    return new FetchedJar(asset.getName(), github.downloadAsset(asset, releaseAssets));
+                }, installer);
+            } catch (MojoExecutionException e) {
+                throw e;
             } catch (Exception e) {
                 throw new MojoExecutionException(e.getMessage(), e);
             }
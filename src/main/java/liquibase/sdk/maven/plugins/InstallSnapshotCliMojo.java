@@ -1,6 +1,7 @@
 package liquibase.sdk.maven.plugins;
 
 import liquibase.sdk.github.GitHubClient;
+import liquibase.sdk.github.SnapshotManifest;
 import liquibase.sdk.util.ArchiveUtil;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -61,19 +62,28 @@ public class InstallSnapshotCliMojo extends AbstractGitHubMojo {
             log.info("Looking for " + branchSearch + " from a run in " + repo);
 
             try {
-                GitHubClient github = new GitHubClient(githubToken, log);
-
-                String matchingLabel = github.findMatchingBranch(repo, branchSearch);
-                if (matchingLabel == null) {
-                    throw new MojoFailureException("Could not find matching branch(es): " + branchSearch + " in " + repo);
-                }
-                log.info("Found matching branch: " + matchingLabel);
-
                 if (repo.endsWith("/liquibase")) {
                     //replace everything in the CLI except liquibase-commercial.jar
-                    String headBranchFilename = matchingLabel.replaceFirst(".*:", "").replaceAll("[^a-zA-Z0-9\\-_.]", "_");
+                    File file = null;
+                    SnapshotManifest.Entry prefetched = getPrefetchedSnapshot(repo, branchSearch);
+                    if (prefetched != null) {
+                        file = prefetched.getArtifact(getCliArtifactName(prefetched.getLabel()));
+                        if (file != null) {
+                            log.info("Using prefetched build #" + prefetched.getRunNumber() + " of " + prefetched.getLabel() + " from " + file.getAbsolutePath());
+                        }
+                    }
+
+                    if (file == null) {
+                        try (GitHubClient github = createGitHubClient()) {
+                            String matchingLabel = github.findMatchingBranch(repo, branchSearch);
+                            if (matchingLabel == null) {
+                                throw new MojoFailureException("Could not find matching branch(es): " + branchSearch + " in " + repo);
+                            }
+                            log.info("Found matching branch: " + matchingLabel);
 
-                    File file = downloadArtifact(github, repo, matchingLabel, "liquibase-zip-" + headBranchFilename, workflowId);
+                            file = downloadArtifact(github, repo, matchingLabel, getCliArtifactName(matchingLabel), workflowId);
+                        }
+                    }
 
                     ArchiveUtil.unzipCli(file, liquibaseHomeDir, log, path -> {
                         if (path.getName().equals("internal/lib/liquibase-commercial.jar")) {
@@ -1,17 +1,27 @@
 package liquibase.sdk.maven.plugins;
 
+import liquibase.sdk.github.AsyncGitHubClient;
 import liquibase.sdk.github.GitHubClient;
+import liquibase.sdk.github.SnapshotManifest;
+import liquibase.sdk.util.ArtifactInstaller;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.kohsuke.github.GHWorkflowRun;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -37,64 +47,125 @@ public class InstallSnapshotMojo extends AbstractGitHubMojo {
     @Parameter(property = "liquibase.sdk.proWorkflowId")
     protected String proWorkflowId;
 
-    public void execute() throws MojoExecutionException, MojoFailureException {
+    /**
+     * If true, download and install the build even if the installed 0-SNAPSHOT was already built from the same commit.
+     */
+    @Parameter(property = "liquibase.sdk.force", defaultValue = "false")
+    protected boolean force;
 
-        for (String repo : getRepos()) {
-            log.info("Looking for " + branchSearch + " from a run in " + repo);
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        AsyncGitHubClient github = null;
+        try {
+            //look up the builds for all repos at once, so the API calls for one repo overlap with the others and with installing
+            Map<String, SnapshotManifest.Entry> prefetchedSnapshots = new HashMap<>();
+            Map<String, CompletableFuture<AsyncGitHubClient.BranchBuild>> lookups = new HashMap<>();
+            for (String repo : getRepos()) {
+                SnapshotManifest.Entry prefetched = getPrefetchedSnapshot(repo, branchSearch);
+                if (prefetched != null && prefetched.getArtifact(getSnapshotArtifactName(repo, prefetched.getLabel())) != null) {
+                    prefetchedSnapshots.put(repo, prefetched);
+                } else {
+                    if (github == null) {
+                        github = new AsyncGitHubClient(createGitHubClient(), downloadThreads);
+                    }
+                    String currentWorkflowId = repo.endsWith("/liquibase") ? workflowId : null;
+                    lookups.put(repo, github.findLastBuildForBranch(repo, branchSearch, GitHubClient.getWorkflowId(repo, currentWorkflowId), skipFailedBuilds));
+                }
+            }
 
-            try {
-                GitHubClient github = new GitHubClient(githubToken, log);
+            for (String repo : getRepos()) {
+                log.info("Looking for " + branchSearch + " from a run in " + repo);
 
-                String matchingLabel = github.findMatchingBranch(repo, branchSearch);
-                if (matchingLabel == null) {
-                    throw new MojoFailureException("Could not find matching branch(es): " + branchSearch + " in " + repo);
-                }
-                log.info("Found matching branch: " + matchingLabel);
-
-                final String artifactName;
-                final String currentWorkflowId;
-                if (repo.endsWith("/liquibase")) {
-                    String headBranchFilename = matchingLabel.replaceFirst(".*:", "").replaceAll("[^a-zA-Z0-9\\-.]", "_");
-                    artifactName = "liquibase-artifacts-" + headBranchFilename;
-                    currentWorkflowId = workflowId;
+                File file;
+                SnapshotManifest.Entry prefetched = prefetchedSnapshots.get(repo);
+                if (prefetched != null) {
+                    File prefetchedFile = prefetched.getArtifact(getSnapshotArtifactName(repo, prefetched.getLabel()));
+                    log.info("Using prefetched build #" + prefetched.getRunNumber() + " of " + prefetched.getLabel() + " from " + prefetchedFile.getAbsolutePath());
+                    if (isInstalled(repo, prefetched.getHeadSha(), prefetched.getRunNumber())) {
+                        continue;
+                    }
+                    file = prefetchedFile;
                 } else {
-                    artifactName = repo.replaceFirst(".*/", "") + "-artifacts";
-                    currentWorkflowId = null;
-                }
+                    AsyncGitHubClient.BranchBuild build = AsyncGitHubClient.await(lookups.get(repo));
+                    String matchingLabel = build.getLabel();
+                    if (matchingLabel == null) {
+                        throw new MojoFailureException("Could not find matching branch(es): " + branchSearch + " in " + repo);
+                    }
+                    log.info("Found matching branch: " + matchingLabel);
+
+                    String artifactName = getSnapshotArtifactName(repo, matchingLabel);
+
+                    GHWorkflowRun run = build.getRun();
+                    if (run == null) {
+                        throw new MojoFailureException("Could not find successful build for branch " + matchingLabel);
+                    }
 
-                File file = github.downloadArtifact(repo, matchingLabel, artifactName, GitHubClient.getWorkflowId(repo, currentWorkflowId), skipFailedBuilds);
+                    //skipping would leave the artifact download out of the bundle being recorded
+                    if (!github.getGitHubClient().isRecording() && isInstalled(repo, run.getHeadSha(), run.getRunNumber())) {
+                        continue;
+                    }
+
+                    //shared with other builds downloading the same artifact, so it is not deleted afterwards
+                    file = AsyncGitHubClient.await(github.downloadArtifact(run, artifactName, getSharedLocks()));
 
-                if (file == null) {
-                    throw new MojoFailureException("Cannot find " + artifactName + ".zip");
+                    if (file == null) {
+                        throw new MojoFailureException("Cannot find " + artifactName + ".zip");
+                    }
                 }
-                file.deleteOnExit();
 
-                try (java.util.zip.ZipFile zipFile = new ZipFile(file)) {
+                try (java.util.zip.ZipFile zipFile = new ZipFile(file);
+                     ArtifactInstaller installer = createArtifactInstaller()) {
+                    List<ZipEntry> jarEntries = new ArrayList<>();
                     Enumeration<? extends ZipEntry> entries = zipFile.entries();
                     while (entries.hasMoreElements()) {
                         ZipEntry entry = entries.nextElement();
                         if (entry.getName().endsWith(".jar") && !entry.getName().contains("-javadoc") && !entry.getName().contains("-sources")) {
-                            log.info("Installing " + entry.getName() + "...");
-
-                            File entryFile = File.createTempFile(entry.getName()+"-", ".jar");
-                            entryFile.deleteOnExit();
-                            try (InputStream in = zipFile.getInputStream(entry);
-                                 OutputStream out = new FileOutputStream(entryFile)) {
-                                IOUtils.copy(in, out);
-                            }
-                            log.debug("Saved " + entry.getName() + " as " + entryFile.getAbsolutePath());
-
-                            installToMavenCache(entryFile);
+                            jarEntries.add(entry);
                         }
                     }
+
+                    fetchAndInstall(jarEntries, entry -> {
+                        String name = new File(entry.getName()).getName();
+                        File entryFile = File.createTempFile(name + "-", ".jar");
+                        try (InputStream in = zipFile.getInputStream(entry);
+                             OutputStream out = new FileOutputStream(entryFile)) {
+                            IOUtils.copy(in, out);
+                        }
+                        log.debug("Saved " + entry.getName() + " as " + entryFile.getAbsolutePath());
+                        return new FetchedJar(name, entryFile);
+                    }, installer);
                 }
 
                 log.info("Successfully installed " + branchSearch + " as version 0-SNAPSHOT from " + repo);
-            } catch (MojoExecutionException | MojoFailureException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new MojoExecutionException(e.getMessage(), e);
             }
+        } catch (MojoExecutionException | MojoFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            //created only when a repo is not prefetched, so it cannot be a try-with-resources
+            if (github != null) {
+                try {
+                    github.close();
+                } catch (IOException e) {
+                    log.warn("Cannot close GitHub connections: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the installed 0-SNAPSHOT was built from the given commit and force is not set.
+     */
+    private boolean isInstalled(String repo, String headSha, long runNumber) {
+        if (force) {
+            return false;
+        }
+        String installedCommit = GitHubClient.getInstalledCommit(repo, log);
+        if (headSha.equals(installedCommit)) {
+            log.info("Installed 0-SNAPSHOT from " + repo + " is already build #" + runNumber + " (" + installedCommit + "). Skipping install, set liquibase.sdk.force=true to reinstall");
+            return true;
         }
+        log.debug("Installed commit " + installedCommit + " does not match " + headSha);
+        return false;
     }
 }
@@ -0,0 +1,135 @@
+package liquibase.sdk.maven.plugins;
+
+import liquibase.sdk.github.GitHubClient;
+import liquibase.sdk.github.SnapshotManifest;
+import liquibase.sdk.util.ParallelUtil;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.kohsuke.github.GHWorkflowRun;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Downloads the latest snapshot builds for several branches and repos into one directory, along with a manifest.</p>
+ * <p>Point install-snapshot and install-snapshot-cli at the manifest with liquibase.sdk.snapshotManifest to install from
+ * the downloaded files without contacting GitHub.</p>
+ */
+@Mojo(name = "prefetch-snapshots", requiresProject = false)
+public class PrefetchSnapshotsMojo extends AbstractGitHubMojo {
+
+    /**
+     * Branch searches to prefetch, separated by semicolons. Each one can list fallback branches separated by commas,
+     * like liquibase.sdk.branchSearch does.
+     */
+    @Parameter(property = "liquibase.sdk.branches", defaultValue = "master")
+    protected String branches;
+
+    @Parameter(property = "liquibase.sdk.prefetchDirectory", required = true)
+    protected String prefetchDirectory;
+
+    @Parameter(property = "liquibase.sdk.skipFailedBuilds", defaultValue = "false")
+    protected Boolean skipFailedBuilds;
+
+    @Parameter(property = "liquibase.sdk.workflowId")
+    protected String workflowId;
+
+    /**
+     * If true, also prefetch the CLI zip used by install-snapshot-cli.
+     */
+    @Parameter(property = "liquibase.sdk.prefetchCli", defaultValue = "false")
+    protected boolean prefetchCli;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File directory = new File(prefetchDirectory);
+        directory.mkdirs();
+
+        List<String[]> searches = new ArrayList<>();
+        for (String repo : getRepos()) {
+            for (String branchSearch : branches.split(";")) {
+                if (!branchSearch.trim().isEmpty()) {
+                    searches.add(new String[]{repo, branchSearch.trim()});
+                }
+            }
+        }
+        if (searches.isEmpty()) {
+            throw new MojoFailureException("No branches to prefetch");
+        }
+
+        try (GitHubClient github = createGitHubClient()) {
+            SnapshotManifest manifest = SnapshotManifest.load(directory);
+
+            List<Boolean> found = ParallelUtil.map(searches, downloadThreads, search -> prefetch(github, manifest, directory, search[0], search[1]));
+
+            int foundCount = 0;
+            for (Boolean searchFound : found) {
+                if (searchFound) {
+                    foundCount++;
+                }
+            }
+            if (foundCount == 0) {
+                throw new MojoFailureException("Found no snapshot artifacts to prefetch for " + branches + " in " + String.join(",", getRepos()));
+            }
+            manifest.save();
+            log.info("Prefetched " + foundCount + " of " + searches.size() + " branch searches into " + directory.getAbsolutePath());
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns false if nothing matched the branch search or the matching build has none of the artifacts. Artifacts already
+     * downloaded for the same run are not downloaded again, unless requests are being recorded.
+     */
+    private boolean prefetch(GitHubClient github, SnapshotManifest manifest, File directory, String repo, String branchSearch) throws IOException {
+        String matchingLabel = github.findMatchingBranch(repo, branchSearch);
+        if (matchingLabel == null) {
+            log.warn("Could not find matching branch(es): " + branchSearch + " in " + repo);
+            return false;
+        }
+
+        String currentWorkflowId = repo.endsWith("/liquibase") ? workflowId : null;
+        GHWorkflowRun run = github.findLastBuild(repo, new GitHubClient.BuildFilter(repo, matchingLabel, skipFailedBuilds), GitHubClient.getWorkflowId(repo, currentWorkflowId));
+        if (run == null) {
+            log.warn("Could not find successful build for branch " + matchingLabel + " in " + repo);
+            return false;
+        }
+
+        List<String> artifactNames = new ArrayList<>();
+        artifactNames.add(getSnapshotArtifactName(repo, matchingLabel));
+        if (prefetchCli && repo.endsWith("/liquibase")) {
+            artifactNames.add(getCliArtifactName(matchingLabel));
+        }
+
+        Map<String, File> artifacts = new LinkedHashMap<>();
+        for (String artifactName : artifactNames) {
+            File artifactFile = new File(directory, artifactName + "-" + run.getId() + ".zip");
+            //while recording, download again so the bundle contains the artifact
+            if (artifactFile.exists() && !github.isRecording()) {
+                log.info("Already prefetched " + artifactFile.getName());
+            } else {
+                File downloaded = github.downloadArtifact(run, artifactName);
+                if (downloaded == null) {
+                    log.warn("Cannot find " + artifactName + ".zip in build #" + run.getRunNumber() + " of " + repo);
+                    continue;
+                }
+                Files.move(downloaded.toPath(), artifactFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            artifacts.put(artifactName, artifactFile);
+        }
+        if (artifacts.isEmpty()) {
+            return false;
+        }
+
+        manifest.record(repo, branchSearch, matchingLabel, run.getRunNumber(), run.getHeadSha(), artifacts);
+        return true;
+    }
+}
@@ -39,14 +39,15 @@ public class SetCommitStatusMojo extends AbstractGitHubMojo {
     protected String statusCommit;
 
     public void execute() throws MojoExecutionException {
-        try {
+        try (GitHubClient github = createGitHubClient()) {
             String repo = getRepo();
 
-            GitHubClient github = createGitHubClient();
-
             String commit;
             if (StringUtils.trimToNull(statusCommit).equals("installed")) {
-                final Properties buildInfo = github.getInstalledBuildProperties(getRepo());
+                final Properties buildInfo = GitHubClient.readInstalledBuildProperties(repo, log);
+                if (buildInfo == null) {
+                    throw new MojoExecutionException("Installed " + repo + " 0-SNAPSHOT jar has no liquibase.build.properties");
+                }
 
                 if (repo.equals("liquibase/liquibase")) {
                     commit = (String) buildInfo.get("build.commit");
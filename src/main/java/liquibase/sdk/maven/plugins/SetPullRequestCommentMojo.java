@@ -35,11 +35,9 @@ public class SetPullRequestCommentMojo extends AbstractGitHubMojo {
 
     public void execute() throws MojoExecutionException {
 
-        try {
+        try (GitHubClient github = createGitHubClient()) {
             String repo = getRepo();
 
-            GitHubClient github = createGitHubClient();
-
             Pattern replaceComment = null;
             if (replaceCommentPattern != null) {
                 replaceComment = Pattern.compile(replaceCommentPattern);
@@ -0,0 +1,219 @@
+package liquibase.sdk.reversion;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the UTF8 entries of a class file's constant pool.
+ * <p>
+ * Only the constant pool is parsed: the rest of the class file is never decoded, because constant pool entries are
+ * the only place a version string can be compiled into a class. Rewriting a constant changes its length, but nothing
+ * after the constant pool refers to byte offsets inside it, so the remainder of the class file is copied unchanged.
+ */
+public class ClassFileConstants {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final byte[] classFile;
+    private final List<Utf8Constant> utf8Constants;
+
+    private ClassFileConstants(byte[] classFile, List<Utf8Constant> utf8Constants) {
+        this.classFile = classFile;
+        this.utf8Constants = utf8Constants;
+    }
+
+    /**
+     * Parses the constant pool of the given class file.
+     *
+     * @throws IOException if the content is not a valid class file
+     */
+    public static ClassFileConstants parse(byte[] classFile) throws IOException {
+        if (classFile.length < 10 || readInt(classFile, 0) != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+
+        List<Utf8Constant> utf8Constants = new ArrayList<>();
+        int constantPoolCount = readUnsignedShort(classFile, 8);
+        int pos = 10;
+        for (int index = 1; index < constantPoolCount; index++) {
+            if (pos >= classFile.length) {
+                throw new IOException("Truncated constant pool");
+            }
+            int tag = classFile[pos] & 0xFF;
+            pos++;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    int length = readUnsignedShort(classFile, pos);
+                    pos += 2;
+                    if (pos + length > classFile.length) {
+                        throw new IOException("Truncated constant pool");
+                    }
+                    utf8Constants.add(new Utf8Constant(classFile, index, pos, length));
+                    pos += length;
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    pos += 2;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    pos += 3;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    pos += 4;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    //8 byte constants take two slots in the pool
+                    pos += 8;
+                    index++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at offset " + (pos - 1));
+            }
+        }
+        if (pos > classFile.length) {
+            throw new IOException("Truncated constant pool");
+        }
+
+        return new ClassFileConstants(classFile, Collections.unmodifiableList(utf8Constants));
+    }
+
+    public List<Utf8Constant> getUtf8Constants() {
+        return utf8Constants;
+    }
+
+    /**
+     * Returns every marker found in a UTF8 constant. Finding locations name the constant pool index, and offsets are relative to the start of the constant.
+     *
+     * @param location description of the class file, used in the returned findings
+     */
+    public List<SnapshotScanner.Finding> scan(SnapshotScanner scanner, String location) {
+        List<SnapshotScanner.Finding> findings = new ArrayList<>();
+        for (Utf8Constant constant : utf8Constants) {
+            SnapshotScanner.Session session = scanner.newSession(location + " constant #" + constant.index);
+            session.write(classFile, constant.offset, constant.length);
+            findings.addAll(session.getFindings());
+        }
+        return findings;
+    }
+
+    /**
+     * Applies the rewriter to every UTF8 constant.
+     *
+     * @return the rewritten class file, or the original array if no constant changed
+     * @throws IOException if a rewritten constant is longer than a class file allows
+     */
+    public byte[] rewrite(TokenRewriter rewriter) throws IOException {
+        ByteArrayOutputStream out = null;
+        int copied = 0;
+        for (Utf8Constant constant : utf8Constants) {
+            ByteArrayOutputStream newValue = new ByteArrayOutputStream(constant.length + 16);
+            if (rewriter.rewrite(new ByteArrayInputStream(classFile, constant.offset, constant.length), newValue) == 0) {
+                continue;
+            }
+            if (newValue.size() > 0xFFFF) {
+                throw new IOException("Constant #" + constant.index + " is too long after rewriting");
+            }
+            if (out == null) {
+                out = new ByteArrayOutputStream(classFile.length + 256);
+            }
+
+            //copy everything up to the length field, then the new length and value
+            out.write(classFile, copied, constant.offset - 2 - copied);
+            out.write(newValue.size() >>> 8);
+            out.write(newValue.size());
+            newValue.writeTo(out);
+            copied = constant.offset + constant.length;
+        }
+
+        if (out == null) {
+            return classFile;
+        }
+        out.write(classFile, copied, classFile.length - copied);
+        return out.toByteArray();
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int pos) throws IOException {
+        if (pos + 2 > bytes.length) {
+            throw new IOException("Truncated constant pool");
+        }
+        return ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16) | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+    }
+
+    public static class Utf8Constant {
+        private final byte[] classFile;
+        private final int index;
+        private final int offset;
+        private final int length;
+
+        private Utf8Constant(byte[] classFile, int index, int offset, int length) {
+            this.classFile = classFile;
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Index of the constant in the constant pool
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Byte offset of the constant's content in the class file
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the constant's value. Class files use modified UTF-8, which only differs from UTF-8 for
+         * null characters and supplementary characters.
+         */
+        public String getValue() {
+            return new String(classFile, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package liquibase.sdk.reversion;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.regex.Pattern;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Re-versions a "0-SNAPSHOT" jar by streaming it entry-by-entry into a new jar.
+ * <p>
+ * Entries that need no change are copied with their original compressed bytes. Pom, xml/html and properties entries
+ * that contain a version to replace are rewritten as they are copied, and only the manifest is rewritten in memory.
+ * Class files are checked through their constant pool strings only, see {@link ClassFileConstants}.
+ * <p>
+ * Zip and tar.gz distributions are handled the same way, and the Liquibase jars they contain are re-versioned in memory
+ * as the distribution is copied, to any depth. Each nested archive is held in memory twice, as read and as rewritten,
+ * so the memory used grows with the size of the largest nested archive.
+ * Entry order and timestamps match the input.
+ */
+public class JarReversioner {
+
+    /**
+     * Matches the Liquibase jars bundled in the CLI distributions, like internal/lib/liquibase-core.jar
+     */
+    public static final Pattern DEFAULT_NESTED_ARCHIVE_PATTERN = Pattern.compile("(.*/)?liquibase[^/]*\\.jar");
+
+    private final String newVersion;
+    private final SnapshotScanner snapshotScanner;
+    private final TokenRewriter snapshotRewriter;
+    private final TokenRewriter classConstantRewriter;
+    private final TokenRewriter buildPropertiesRewriter;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean rewriteClassConstants;
+    private Pattern nestedArchivePattern = DEFAULT_NESTED_ARCHIVE_PATTERN;
+
+    public JarReversioner(String newVersion) {
+        this(newVersion, new SnapshotScanner());
+    }
+
+    public JarReversioner(String newVersion, SnapshotScanner snapshotScanner) {
+        this.newVersion = newVersion;
+        this.snapshotScanner = snapshotScanner;
+        this.snapshotRewriter = new TokenRewriter(TokenRewriter.Rule.replaceToken("0-SNAPSHOT", newVersion, '.'));
+        //each constant is rewritten on its own, so a constant that is just "0-SNAPSHOT" starts with the token
+        this.classConstantRewriter = new TokenRewriter(TokenRewriter.Rule.replaceTokenInValue("0-SNAPSHOT", newVersion, '.'));
+        this.buildPropertiesRewriter = new TokenRewriter(TokenRewriter.Rule.replaceLineValue("build.version=", newVersion));
+    }
+
+    /**
+     * Sets the deflate level for rewritten entries. Entries copied unchanged keep their original compression.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * If true, "0-SNAPSHOT" versions in class file string constants are replaced like in pom and xml files.
+     * Otherwise they are only reported in {@link Result#getSnapshotFindings()}.
+     */
+    public void setRewriteClassConstants(boolean rewriteClassConstants) {
+        this.rewriteClassConstants = rewriteClassConstants;
+    }
+
+    /**
+     * Nested archives whose path in the parent archive matches this pattern are re-versioned along with their parent.
+     * Other nested archives are copied unchanged and are not checked for snapshot versions. Null disables nested re-versioning.
+     */
+    public void setNestedArchivePattern(Pattern nestedArchivePattern) {
+        this.nestedArchivePattern = nestedArchivePattern;
+    }
+
+    /**
+     * Writes a re-versioned copy of inputFile to outputFile.
+     * Any snapshot versions still in the output are returned in {@link Result#getSnapshotFindings()}.
+     */
+    public Result reversion(File inputFile, File outputFile) throws IOException {
+        Result result = new Result();
+        if (isTarGz(inputFile.getName())) {
+            try (TarArchiveInputStream in = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(Files.newInputStream(inputFile.toPath()))));
+                 TarArchiveOutputStream out = new TarArchiveOutputStream(new GzipCompressorOutputStream(new BufferedOutputStream(Files.newOutputStream(outputFile.toPath()))))) {
+                reversionTar(in, out, inputFile.getName(), result);
+            }
+        } else {
+            try (ZipFile zipFile = new ZipFile(inputFile);
+                 ZipArchiveOutputStream out = new ZipArchiveOutputStream(outputFile)) {
+                //distributions can hold any number of pom.xml files, only a jar's own pom is extracted
+                reversionZip(zipFile, out, inputFile.getName(), inputFile.getName().endsWith(".jar"), result);
+            }
+        }
+        result.createdFiles.add(outputFile);
+
+        return result;
+    }
+
+    /**
+     * @param extractPom if true, the archive's META-INF/maven/.../pom.xml is returned in {@link Result#getPom()}
+     */
+    private void reversionZip(ZipFile zipFile, ZipArchiveOutputStream out, String archiveLocation, boolean extractPom, Result result) throws IOException {
+        out.setLevel(compressionLevel);
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            String name = entry.getName();
+
+            if (entry.isDirectory()) {
+                copyRawEntry(zipFile, entry, out);
+                continue;
+            }
+
+            if (isArchive(name)) {
+                if (!isNestedArchive(name)) {
+                    copyRawEntry(zipFile, entry, out);
+                    continue;
+                }
+                byte[] content;
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    content = reversionNested(IOUtils.toByteArray(input), name, location(archiveLocation, name), result);
+                }
+
+                ZipArchiveEntry nestedEntry = createRewrittenEntry(entry);
+                nestedEntry.setMethod(entry.getMethod());
+                if (entry.getMethod() == ZipEntry.STORED) {
+                    CRC32 crc = new CRC32();
+                    crc.update(content);
+                    nestedEntry.setSize(content.length);
+                    nestedEntry.setCrc(crc.getValue());
+                }
+                out.putArchiveEntry(nestedEntry);
+                out.write(content);
+                out.closeArchiveEntry();
+                result.rewrittenEntries++;
+                continue;
+            }
+
+            if (name.equals("META-INF/MANIFEST.MF")) {
+                byte[] content;
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    content = fixManifest(IOUtils.toByteArray(input));
+                }
+                result.snapshotFindings.addAll(snapshotScanner.scan(location(archiveLocation, name), content));
+
+                out.putArchiveEntry(createRewrittenEntry(entry));
+                out.write(content);
+                out.closeArchiveEntry();
+                result.rewrittenEntries++;
+                continue;
+            }
+
+            if (name.endsWith(".class")) {
+                byte[] content;
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    content = IOUtils.toByteArray(input);
+                }
+                byte[] rewritten = reversionClass(content, location(archiveLocation, name), result);
+                if (rewritten != content) {
+                    out.putArchiveEntry(createRewrittenEntry(entry));
+                    out.write(rewritten);
+                    out.closeArchiveEntry();
+                    result.rewrittenEntries++;
+                } else {
+                    copyRawEntry(zipFile, entry, out);
+                }
+                continue;
+            }
+
+            TokenRewriter rewriter = getRewriter(name);
+            boolean needsRewrite = false;
+            if (rewriter != null) {
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    needsRewrite = rewriter.matches(input);
+                }
+            }
+
+            if (!needsRewrite) {
+                if (extractPom && isMavenPom(name)) {
+                    try (InputStream input = zipFile.getInputStream(entry)) {
+                        result.pom = IOUtils.toByteArray(input);
+                    }
+                    result.snapshotFindings.addAll(snapshotScanner.scan(location(archiveLocation, name), result.pom));
+                } else {
+                    try (InputStream input = zipFile.getInputStream(entry)) {
+                        result.snapshotFindings.addAll(snapshotScanner.scan(location(archiveLocation, name), input));
+                    }
+                }
+                copyRawEntry(zipFile, entry, out);
+                continue;
+            }
+
+            SnapshotScanner.Session scanSession = snapshotScanner.newSession(location(archiveLocation, name));
+            ByteArrayOutputStream pomContent = null;
+            OutputStream target = new TeeOutputStream(CloseShieldOutputStream.wrap(out), scanSession);
+            if (extractPom && isMavenPom(name)) {
+                pomContent = new ByteArrayOutputStream();
+                target = new TeeOutputStream(target, pomContent);
+            }
+
+            out.putArchiveEntry(createRewrittenEntry(entry));
+            try (InputStream input = zipFile.getInputStream(entry)) {
+                rewriter.rewrite(input, target);
+            }
+            out.closeArchiveEntry();
+
+            result.snapshotFindings.addAll(scanSession.getFindings());
+            result.rewrittenEntries++;
+            if (pomContent != null) {
+                result.pom = pomContent.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * Re-versions a tar archive. Tar entries need their size up front, so entries that may be rewritten are handled in
+     * memory, while all other entries are streamed.
+     */
+    private void reversionTar(TarArchiveInputStream in, TarArchiveOutputStream out, String archiveLocation, Result result) throws IOException {
+        out.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        out.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+        TarArchiveEntry entry;
+        while ((entry = in.getNextTarEntry()) != null) {
+            String name = entry.getName();
+            if (!entry.isFile()) {
+                out.putArchiveEntry(entry);
+                out.closeArchiveEntry();
+                continue;
+            }
+
+            TokenRewriter rewriter = getRewriter(name);
+            byte[] content;
+            byte[] rewritten;
+            if (isArchive(name)) {
+                if (isNestedArchive(name)) {
+                    content = IOUtils.toByteArray(in);
+                    rewritten = reversionNested(content, name, location(archiveLocation, name), result);
+                } else {
+                    out.putArchiveEntry(entry);
+                    IOUtils.copy(in, out);
+                    out.closeArchiveEntry();
+                    continue;
+                }
+            } else if (name.endsWith(".class")) {
+                content = IOUtils.toByteArray(in);
+                rewritten = reversionClass(content, location(archiveLocation, name), result);
+            } else if (rewriter != null) {
+                content = IOUtils.toByteArray(in);
+                ByteArrayOutputStream rewrittenContent = new ByteArrayOutputStream(content.length + 16);
+                if (rewriter.rewrite(new ByteArrayInputStream(content), rewrittenContent) > 0) {
+                    rewritten = rewrittenContent.toByteArray();
+                } else {
+                    rewritten = content;
+                }
+                result.snapshotFindings.addAll(snapshotScanner.scan(location(archiveLocation, name), rewritten));
+            } else {
+                SnapshotScanner.Session scanSession = snapshotScanner.newSession(location(archiveLocation, name));
+                out.putArchiveEntry(entry);
+                IOUtils.copy(in, new TeeOutputStream(CloseShieldOutputStream.wrap(out), scanSession));
+                out.closeArchiveEntry();
+                result.snapshotFindings.addAll(scanSession.getFindings());
+                continue;
+            }
+
+            //the input stream still uses the entry's size, so it is only changed while writing the header
+            long originalSize = entry.getSize();
+            if (rewritten != content) {
+                entry.setSize(rewritten.length);
+                result.rewrittenEntries++;
+            }
+            out.putArchiveEntry(entry);
+            entry.setSize(originalSize);
+            out.write(rewritten);
+            out.closeArchiveEntry();
+        }
+    }
+
+    /**
+     * Re-versions an archive contained in another archive. The nested archive is handled in memory, never on disk,
+     * and is not limited by a memory budget like the one of {@link liquibase.sdk.util.BudgetedBackingStoreSupplier}.
+     * Its findings and rewritten entries are added to the parent result, but its pom is not.
+     *
+     * @return the re-versioned archive
+     */
+    private byte[] reversionNested(byte[] content, String name, String location, Result result) throws IOException {
+        Result nestedResult = new Result();
+        byte[] rewritten;
+        if (isTarGz(name)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length + 1024);
+            try (TarArchiveInputStream in = new TarArchiveInputStream(new GzipCompressorInputStream(new ByteArrayInputStream(content)));
+                 TarArchiveOutputStream out = new TarArchiveOutputStream(new GzipCompressorOutputStream(buffer))) {
+                reversionTar(in, out, location, nestedResult);
+            }
+            rewritten = buffer.toByteArray();
+        } else {
+            SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+            try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(content), location, StandardCharsets.UTF_8.name(), true);
+                 ZipArchiveOutputStream out = new ZipArchiveOutputStream(channel)) {
+                reversionZip(zipFile, out, location, false, nestedResult);
+                out.finish();
+                rewritten = Arrays.copyOf(channel.array(), (int) channel.size());
+            }
+        }
+
+        result.snapshotFindings.addAll(nestedResult.snapshotFindings);
+        result.rewrittenEntries += nestedResult.rewrittenEntries;
+        return rewritten;
+    }
+
+    private static boolean isMavenPom(String name) {
+        return name.startsWith("META-INF/maven/") && name.endsWith("/pom.xml");
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(".jar") || name.endsWith(".zip") || isTarGz(name);
+    }
+
+    private boolean isNestedArchive(String name) {
+        return nestedArchivePattern != null && nestedArchivePattern.matcher(name).matches();
+    }
+
+    private static boolean isTarGz(String name) {
+        return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Scans the class file's string constants and rewrites them if {@link #setRewriteClassConstants(boolean)} is set.
+     * Content that cannot be parsed as a class file is scanned as raw bytes instead.
+     *
+     * @return the new class file content, or the given array if nothing changed
+     */
+    private byte[] reversionClass(byte[] content, String location, Result result) throws IOException {
+        ClassFileConstants constants;
+        try {
+            constants = ClassFileConstants.parse(content);
+        } catch (IOException e) {
+            result.snapshotFindings.addAll(snapshotScanner.scan(location, content));
+            return content;
+        }
+
+        if (rewriteClassConstants) {
+            byte[] rewritten = constants.rewrite(classConstantRewriter);
+            if (rewritten != content) {
+                constants = ClassFileConstants.parse(rewritten);
+                result.snapshotFindings.addAll(constants.scan(snapshotScanner, location));
+                return rewritten;
+            }
+        }
+
+        result.snapshotFindings.addAll(constants.scan(snapshotScanner, location));
+        return content;
+    }
+
+    /**
+     * Returns the rewriter to use for the given entry, or null if it should be copied as-is
+     */
+    private TokenRewriter getRewriter(String name) {
+        if (name.endsWith("/pom.xml")
+                || name.endsWith("/pom.properties")
+                || name.endsWith(".html")
+                || name.endsWith(".xml")) {
+            return snapshotRewriter;
+        } else if (name.endsWith("liquibase.build.properties")) {
+            return buildPropertiesRewriter;
+        }
+        return null;
+    }
+
+    private static void copyRawEntry(ZipFile zipFile, ZipArchiveEntry entry, ZipArchiveOutputStream out) throws IOException {
+        try (InputStream rawContent = zipFile.getRawInputStream(entry)) {
+            out.addRawArchiveEntry(entry, rawContent);
+        }
+    }
+
+    private static ZipArchiveEntry createRewrittenEntry(ZipArchiveEntry original) {
+        ZipArchiveEntry fixedEntry = new ZipArchiveEntry(original.getName());
+        fixedEntry.setMethod(ZipEntry.DEFLATED);
+        fixedEntry.setTime(original.getTime());
+        fixedEntry.setExtraFields(original.getExtraFields());
+        fixedEntry.setComment(original.getComment());
+        return fixedEntry;
+    }
+
+    private static String location(String archiveLocation, String entryName) {
+        return archiveLocation + "!/" + entryName;
+    }
+
+    private byte[] fixManifest(byte[] content) throws IOException {
+        Manifest manifest = new Manifest(new ByteArrayInputStream(content));
+        final Attributes attributes = manifest.getMainAttributes();
+
+        attributes.putValue("Liquibase-Version", newVersion);
+
+        final String bundleVersion = attributes.getValue("Bundle-Version");
+        if (bundleVersion != null) {
+            attributes.putValue("Bundle-Version", newVersion);
+        }
+
+        final String importPackage = attributes.getValue("Import-Package");
+        if (importPackage != null) {
+            attributes.putValue("Import-Package", importPackage.replaceAll("version=\"\\[0\\.0,1\\)\"", "version=\"" + newVersion + "\""));
+        }
+
+        final String exportPackage = attributes.getValue("Export-Package");
+        if (exportPackage != null) {
+            attributes.putValue("Export-Package", exportPackage.replaceAll(";version=\"0\\.0\\.0\"", ";version=\"" + newVersion + "\""));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        return out.toByteArray();
+    }
+
+    public static class Result {
+        private byte[] pom;
+        private int rewrittenEntries;
+        private final List<SnapshotScanner.Finding> snapshotFindings = new ArrayList<>();
+        private final List<File> createdFiles = new ArrayList<>();
+        private final Map<File, String> outputDigests = new LinkedHashMap<>();
+        private String inputDigest;
+
+        /**
+         * Returns the re-versioned contents of the jar's META-INF/maven/.../pom.xml, or null if it does not contain one.
+         * Always null for zip and tar.gz distributions.
+         */
+        public byte[] getPom() {
+            return pom;
+        }
+
+        public int getRewrittenEntries() {
+            return rewrittenEntries;
+        }
+
+        /**
+         * Snapshot versions that are still in the re-versioned jar. Empty if the jar is clean.
+         */
+        public List<SnapshotScanner.Finding> getSnapshotFindings() {
+            return snapshotFindings;
+        }
+
+        /**
+         * Files created for this jar. Contains the output jar, callers can add files they derive from it.
+         */
+        public List<File> getCreatedFiles() {
+            return createdFiles;
+        }
+
+        /**
+         * SHA-256 of the input jar, if the caller tracks it. Null otherwise.
+         */
+        public String getInputDigest() {
+            return inputDigest;
+        }
+
+        public void setInputDigest(String inputDigest) {
+            this.inputDigest = inputDigest;
+        }
+
+        /**
+         * SHA-256 of each created file, if the caller tracks them.
+         */
+        public Map<File, String> getOutputDigests() {
+            return outputDigests;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package liquibase.sdk.reversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Tracks what create-release-artifacts has already produced in an output directory so a rerun can skip completed work.
+ * The state is stored as {@link #FILE_NAME} in the output directory itself, so it must not be published with the artifacts.
+ * <p>
+ * For each input jar it records the input's SHA-256, the files created from it and their SHA-256 digests, and which
+ * of those files have been signed. The state is only valid for a single newVersion: loading it for a different
+ * version starts from an empty state. All methods are thread-safe.
+ * <p>
+ * Outputs that were moved into a bundle, such as the additional zip, are recorded with the bundle's digest. Once the
+ * bundle is checked with {@link #verifyBundle(File, String)}, those outputs count as present even though their files
+ * were deleted.
+ */
+public class ReleaseBuildState {
+
+    public static final String FILE_NAME = ".liquibase-release-state.properties";
+
+    private final File file;
+    private final Properties properties = new Properties();
+    private final Set<String> verifiedBundles = new HashSet<>();
+
+    private ReleaseBuildState(File file) {
+        this.file = file;
+    }
+
+    public static ReleaseBuildState load(File outputDirectory, String newVersion) throws IOException {
+        ReleaseBuildState state = new ReleaseBuildState(new File(outputDirectory, FILE_NAME));
+        if (state.file.exists()) {
+            try (InputStream input = Files.newInputStream(state.file.toPath())) {
+                state.properties.load(input);
+            }
+            if (!newVersion.equals(state.properties.getProperty("newVersion"))) {
+                state.properties.clear();
+            }
+        }
+        state.properties.setProperty("newVersion", newVersion);
+        return state;
+    }
+
+    /**
+     * Returns the files previously created from the given input, or null if the input was not processed with the given digest.
+     * The caller still needs to check the returned files with {@link #isOutputValid(File, String)}.
+     */
+    public synchronized List<File> getOutputs(String inputName, String inputDigest) {
+        if (!inputDigest.equals(properties.getProperty("input." + inputName + ".sha256"))) {
+            return null;
+        }
+        String outputs = properties.getProperty("input." + inputName + ".outputs");
+        if (outputs == null) {
+            return null;
+        }
+
+        List<File> returnList = new ArrayList<>();
+        for (String outputName : outputs.split(",")) {
+            returnList.add(new File(file.getParentFile(), outputName));
+        }
+        return returnList;
+    }
+
+    /**
+     * Returns true if the output exists and has the digest recorded for it.
+     */
+    public synchronized boolean isOutputValid(File output, String outputDigest) {
+        return output.exists() && outputDigest.equals(getOutputDigest(output));
+    }
+
+    /**
+     * Returns true if the output was moved into a bundle that has been verified with {@link #verifyBundle(File, String)}.
+     */
+    public synchronized boolean isBundled(File output) {
+        String bundle = properties.getProperty("bundled." + output.getName());
+        return bundle != null && verifiedBundles.contains(bundle);
+    }
+
+    /**
+     * Marks the bundle as verified if it has the digest recorded by {@link #recordBundle(File, String, Collection)}.
+     *
+     * @param bundleDigest the bundle's current digest, or null if it does not exist
+     * @return true if the bundle is verified
+     */
+    public synchronized boolean verifyBundle(File bundle, String bundleDigest) {
+        if (bundleDigest != null && bundleDigest.equals(properties.getProperty("bundle." + bundle.getName() + ".sha256"))) {
+            verifiedBundles.add(bundle.getName());
+            return true;
+        }
+        verifiedBundles.remove(bundle.getName());
+        return false;
+    }
+
+    /**
+     * Records that the given files were moved into the bundle, so they count as present once the bundle is verified.
+     */
+    public synchronized void recordBundle(File bundle, String bundleDigest, Collection<String> bundledNames) {
+        properties.stringPropertyNames().stream()
+                .filter(key -> key.startsWith("bundled.") && bundle.getName().equals(properties.getProperty(key)))
+                .forEach(properties::remove);
+        for (String name : bundledNames) {
+            properties.setProperty("bundled." + name, bundle.getName());
+        }
+        properties.setProperty("bundle." + bundle.getName() + ".sha256", bundleDigest);
+        verifiedBundles.add(bundle.getName());
+    }
+
+    private boolean exists(File output) {
+        return output.exists() || isBundled(output);
+    }
+
+    public synchronized String getOutputDigest(File output) {
+        return properties.getProperty("output." + output.getName() + ".sha256");
+    }
+
+    public synchronized void recordInput(String inputName, String inputDigest, Map<File, String> outputDigests) {
+        StringBuilder outputs = new StringBuilder();
+        for (Map.Entry<File, String> output : outputDigests.entrySet()) {
+            if (outputs.length() > 0) {
+                outputs.append(",");
+            }
+            outputs.append(output.getKey().getName());
+            properties.setProperty("output." + output.getKey().getName() + ".sha256", output.getValue());
+            properties.remove("output." + output.getKey().getName() + ".signed");
+        }
+        properties.setProperty("input." + inputName + ".sha256", inputDigest);
+        properties.setProperty("input." + inputName + ".outputs", outputs.toString());
+    }
+
+    /**
+     * Returns true if the output was signed in its current form and the signature and all the given sidecar files still exist.
+     *
+     * @param sidecarExtensions extensions of the checksum files that must exist, without the leading "."
+     */
+    public synchronized boolean isSigned(File output, Collection<String> sidecarExtensions) {
+        String digest = getOutputDigest(output);
+        if (digest == null || !digest.equals(properties.getProperty("output." + output.getName() + ".signed"))) {
+            return false;
+        }
+        if (!exists(new File(output.getAbsolutePath() + ".asc"))) {
+            return false;
+        }
+        for (String extension : sidecarExtensions) {
+            if (!exists(new File(output.getAbsolutePath() + "." + extension))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void recordSigned(File output) {
+        String digest = getOutputDigest(output);
+        if (digest != null) {
+            properties.setProperty("output." + output.getName() + ".signed", digest);
+        }
+    }
+
+    /**
+     * Writes the state to the output directory, replacing the previous file in one step.
+     */
+    public synchronized void save() throws IOException {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(output, "create-release-artifacts state. Delete to force a full rebuild");
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,214 @@
+package liquibase.sdk.reversion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Searches content for snapshot version markers like "0-SNAPSHOT".
+ * <p>
+ * All markers are matched in a single pass over the raw bytes using an Aho-Corasick automaton, so content is never
+ * decoded into Strings and memory use does not depend on the content size. Instances are immutable and thread-safe.
+ */
+public class SnapshotScanner {
+
+    public static final List<String> DEFAULT_MARKERS = Collections.unmodifiableList(Arrays.asList("0-SNAPSHOT", "0.0.0.SNAPSHOT"));
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final List<String> markers;
+
+    private final int[] markerLengths;
+
+    /**
+     * transitions[state][byte] is the next state
+     */
+    private final int[][] transitions;
+
+    /**
+     * Indexes into {@link #markers} of every marker that ends at the given state
+     */
+    private final int[][] matches;
+
+    public SnapshotScanner() {
+        this(DEFAULT_MARKERS);
+    }
+
+    public SnapshotScanner(Collection<String> markers) {
+        Set<String> uniqueMarkers = new LinkedHashSet<>(markers);
+        uniqueMarkers.remove("");
+        this.markers = new ArrayList<>(uniqueMarkers);
+        this.markerLengths = new int[this.markers.size()];
+
+        List<int[]> transitionList = new ArrayList<>();
+        List<Set<Integer>> matchList = new ArrayList<>();
+        transitionList.add(newState());
+        matchList.add(new TreeSet<>());
+
+        //build the trie
+        for (int i = 0; i < this.markers.size(); i++) {
+            byte[] markerBytes = this.markers.get(i).getBytes(StandardCharsets.UTF_8);
+            markerLengths[i] = markerBytes.length;
+            int state = 0;
+            for (byte b : markerBytes) {
+                int next = transitionList.get(state)[b & 0xFF];
+                if (next < 0) {
+                    next = transitionList.size();
+                    transitionList.get(state)[b & 0xFF] = next;
+                    transitionList.add(newState());
+                    matchList.add(new TreeSet<>());
+                }
+                state = next;
+            }
+            matchList.get(state).add(i);
+        }
+
+        //turn it into a DFA by following failure links breadth-first
+        int[] failure = new int[transitionList.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = transitionList.get(0);
+        for (int b = 0; b < 256; b++) {
+            if (root[b] < 0) {
+                root[b] = 0;
+            } else {
+                failure[root[b]] = 0;
+                queue.add(root[b]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matchList.get(state).addAll(matchList.get(failure[state]));
+            int[] stateTransitions = transitionList.get(state);
+            for (int b = 0; b < 256; b++) {
+                int next = stateTransitions[b];
+                if (next < 0) {
+                    stateTransitions[b] = transitionList.get(failure[state])[b];
+                } else {
+                    failure[next] = transitionList.get(failure[state])[b];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = transitionList.toArray(new int[0][]);
+        this.matches = new int[matchList.size()][];
+        for (int i = 0; i < matchList.size(); i++) {
+            this.matches[i] = matchList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    public List<String> getMarkers() {
+        return Collections.unmodifiableList(markers);
+    }
+
+    /**
+     * Returns every marker found in the content. Does not close the stream.
+     *
+     * @param location description of where the content came from, used in the returned findings
+     */
+    public List<Finding> scan(String location, InputStream content) throws IOException {
+        Session session = newSession(location);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            session.write(buffer, 0, read);
+        }
+        return session.getFindings();
+    }
+
+    /**
+     * Returns every marker found in the content.
+     */
+    public List<Finding> scan(String location, byte[] content) {
+        Session session = newSession(location);
+        session.write(content, 0, content.length);
+        return session.getFindings();
+    }
+
+    /**
+     * Returns an output stream which scans everything written to it. Useful for scanning content while it is being written elsewhere.
+     */
+    public Session newSession(String location) {
+        return new Session(location);
+    }
+
+    public class Session extends OutputStream {
+        private final String location;
+        private final List<Finding> findings = new ArrayList<>();
+        private int state;
+        private long position;
+
+        private Session(String location) {
+            this.location = location;
+        }
+
+        @Override
+        public void write(int b) {
+            state = transitions[state][b & 0xFF];
+            for (int match : matches[state]) {
+                findings.add(new Finding(location, markers.get(match), position + 1 - markerLengths[match]));
+            }
+            position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            int[][] transitions = SnapshotScanner.this.transitions;
+            int state = this.state;
+            for (int i = offset; i < offset + length; i++) {
+                state = transitions[state][bytes[i] & 0xFF];
+                if (matches[state].length > 0) {
+                    for (int match : matches[state]) {
+                        findings.add(new Finding(location, markers.get(match), position + (i - offset) + 1 - markerLengths[match]));
+                    }
+                }
+            }
+            this.state = state;
+            this.position += length;
+        }
+
+        public List<Finding> getFindings() {
+            return findings;
+        }
+    }
+
+    public static class Finding {
+        private final String location;
+        private final String marker;
+        private final long offset;
+
+        public Finding(String location, String marker, long offset) {
+            this.location = location;
+            this.marker = marker;
+            this.offset = offset;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getMarker() {
+            return marker;
+        }
+
+        /**
+         * Byte offset of the marker within the uncompressed content
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return location + " contains " + marker + " at offset " + offset;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package liquibase.sdk.reversion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replaces tokens in content as it is copied from an input stream to an output stream.
+ * <p>
+ * Rules are compiled to byte arrays once and matched directly against the raw bytes, so content is never decoded into
+ * Strings and memory use does not depend on the content size. Instances are immutable and thread-safe.
+ */
+public class TokenRewriter {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Rule[] rules;
+    private final int maxTokenLength;
+
+    public TokenRewriter(Rule... rules) {
+        this.rules = rules;
+        int maxTokenLength = 1;
+        for (Rule rule : rules) {
+            maxTokenLength = Math.max(maxTokenLength, rule.token.length);
+        }
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    /**
+     * Returns true if {@link #rewrite(InputStream, OutputStream)} would change the content. Stops reading at the first match.
+     */
+    public boolean matches(InputStream content) throws IOException {
+        return process(content, null) > 0;
+    }
+
+    /**
+     * Copies the content to the output, applying all rules. Does not close either stream.
+     *
+     * @return the number of replacements made
+     */
+    public long rewrite(InputStream content, OutputStream out) throws IOException {
+        return process(content, out);
+    }
+
+    /**
+     * If out is null, returns as soon as a replacement would be made.
+     */
+    private long process(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE + maxTokenLength];
+        int length = 0;
+        int previous = -1;
+        boolean skippingLine = false;
+        boolean eof = false;
+        long replacements = 0;
+
+        while (!eof || length > 0) {
+            if (!eof) {
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    eof = true;
+                } else {
+                    length += read;
+                }
+            }
+
+            int pos = 0;
+            int flushed = 0;
+            scan:
+            while (pos < length) {
+                if (skippingLine) {
+                    if (buffer[pos] == '\n' || buffer[pos] == '\r') {
+                        skippingLine = false;
+                    } else {
+                        pos++;
+                        flushed = pos;
+                        continue;
+                    }
+                }
+
+                for (Rule rule : rules) {
+                    int match = rule.matchAt(buffer, pos, length);
+                    if (match == Rule.PARTIAL && !eof) {
+                        //wait for more content before deciding
+                        break scan;
+                    }
+                    if (match == Rule.FULL && rule.acceptsPrevious(pos > 0 ? buffer[pos - 1] & 0xFF : previous)) {
+                        replacements++;
+                        if (out == null) {
+                            return replacements;
+                        }
+                        out.write(buffer, flushed, pos - flushed);
+                        out.write(rule.replacement);
+                        pos += rule.token.length;
+                        flushed = pos;
+                        skippingLine = rule.replaceRestOfLine;
+                        continue scan;
+                    }
+                }
+                pos++;
+            }
+
+            if (out != null) {
+                out.write(buffer, flushed, pos - flushed);
+            }
+            if (pos > 0) {
+                previous = buffer[pos - 1] & 0xFF;
+            }
+            System.arraycopy(buffer, pos, buffer, 0, length - pos);
+            length -= pos;
+        }
+
+        return replacements;
+    }
+
+    public static class Rule {
+        private static final int NONE = 0;
+        private static final int PARTIAL = 1;
+        private static final int FULL = 2;
+
+        private final byte[] token;
+        private final byte[] replacement;
+        private final int forbiddenPrevious;
+        private final boolean matchAtStart;
+        private final boolean replaceRestOfLine;
+
+        private Rule(byte[] token, byte[] replacement, int forbiddenPrevious, boolean matchAtStart, boolean replaceRestOfLine) {
+            this.token = token;
+            this.replacement = replacement;
+            this.forbiddenPrevious = forbiddenPrevious;
+            this.matchAtStart = matchAtStart;
+            this.replaceRestOfLine = replaceRestOfLine;
+        }
+
+        /**
+         * Replaces every occurrence of token that has a preceding character which is not forbiddenPrevious.
+         * Same as the regexp replacement of "([^forbiddenPrevious])token" with "$1replacement".
+         */
+        public static Rule replaceToken(String token, String replacement, char forbiddenPrevious) {
+            return new Rule(token.getBytes(StandardCharsets.UTF_8), replacement.getBytes(StandardCharsets.UTF_8), forbiddenPrevious, false, false);
+        }
+
+        /**
+         * Like {@link #replaceToken(String, String, char)}, but also replaces the token at the start of the content.
+         * Use it for content holding a single value, such as a class file string constant, where a bare token is the whole value.
+         * Same as the regexp replacement of "(^|[^forbiddenPrevious])token" with "$1replacement".
+         */
+        public static Rule replaceTokenInValue(String token, String replacement, char forbiddenPrevious) {
+            return new Rule(token.getBytes(StandardCharsets.UTF_8), replacement.getBytes(StandardCharsets.UTF_8), forbiddenPrevious, true, false);
+        }
+
+        /**
+         * Replaces everything after key up to the end of the line with value.
+         * Same as the regexp replacement of "key.*" with "keyvalue".
+         */
+        public static Rule replaceLineValue(String key, String value) {
+            return new Rule(key.getBytes(StandardCharsets.UTF_8), (key + value).getBytes(StandardCharsets.UTF_8), -1, true, true);
+        }
+
+        private int matchAt(byte[] buffer, int pos, int length) {
+            for (int i = 0; i < token.length; i++) {
+                if (pos + i >= length) {
+                    return PARTIAL;
+                }
+                if (buffer[pos + i] != token[i]) {
+                    return NONE;
+                }
+            }
+            return FULL;
+        }
+
+        /**
+         * @param previous the byte before the token, or -1 if the token is at the start of the content
+         */
+        private boolean acceptsPrevious(int previous) {
+            if (forbiddenPrevious < 0) {
+                return true;
+            }
+            if (previous < 0) {
+                return matchAtStart;
+            }
+            return previous != forbiddenPrevious;
+        }
+    }
+}
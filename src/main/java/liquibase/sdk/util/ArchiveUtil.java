@@ -8,7 +8,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -59,6 +64,37 @@ public class ArchiveUtil {
         return name.matches(regexpPattern);
     }
 
+    /**
+     * Hard links the given file, or every file under the given directory, to the same relative paths under target.
+     * Files are copied instead where links are not supported, such as across filesystems. Existing target files are replaced.
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        if (!Files.isDirectory(source)) {
+            linkOrCopyFile(source, target);
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            linkOrCopyFile(file, target.resolve(source.relativize(file).toString()));
+        }
+    }
+
+    private static void linkOrCopyFile(Path source, Path target) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public interface UnzipFilter {
         boolean include(ZipEntry path);
     }
@@ -0,0 +1,202 @@
+package liquibase.sdk.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.installation.InstallRequest;
+import org.eclipse.aether.installation.InstallationException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Installs jars into the local maven repository with a single Maven Resolver {@link InstallRequest}.
+ * <p>
+ * Each jar's coordinates come from its embedded META-INF/maven/.../pom.properties, and its embedded pom.xml is
+ * installed along with it. Classifiers are taken from the file name. Call {@link #install()} once after adding all
+ * jars, then {@link #close()} to remove the staging directory.
+ * <p>
+ * Maven Resolver does not coordinate processes sharing a local repository, so with {@link FileLocks} the install holds
+ * a lock for every artifact it writes. Other installs of the same artifacts, in this or other processes, wait for it.
+ */
+public class ArtifactInstaller implements Closeable {
+
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private final File stagingDirectory;
+    private final List<Artifact> artifacts = new ArrayList<>();
+    private final Set<String> installedPoms = new LinkedHashSet<>();
+    private final FileLocks locks;
+
+    public ArtifactInstaller(RepositorySystem repositorySystem, RepositorySystemSession session) throws IOException {
+        this(repositorySystem, session, null);
+    }
+
+    /**
+     * @param locks locks to hold while installing, or null to not coordinate with other processes
+     */
+    public ArtifactInstaller(RepositorySystem repositorySystem, RepositorySystemSession session, FileLocks locks) throws IOException {
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.locks = locks;
+        this.stagingDirectory = Files.createTempDirectory("liquibase-install-").toFile();
+    }
+
+    /**
+     * Key of the lock held while installing the given artifact. It is the artifact's published file name without
+     * extension, so installs of the same jar by file name use the same lock.
+     */
+    public static String getInstallLockKey(String fileBaseName) {
+        return "install-" + fileBaseName;
+    }
+
+    /**
+     * Stages a jar read from the given stream.
+     *
+     * @param fileName the jar's file name, used to determine its classifier
+     * @return false if the jar has no embedded pom.properties and cannot be installed this way
+     */
+    public boolean addJar(String fileName, InputStream content) throws IOException {
+        File jarFile = new File(stagingDirectory, artifacts.size() + "-" + new File(fileName).getName());
+        Files.copy(content, jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (addJar(jarFile, new File(fileName).getName())) {
+            return true;
+        }
+        Files.delete(jarFile.toPath());
+        return false;
+    }
+
+    /**
+     * Stages the given jar without copying it. The file must exist until {@link #install()} is called.
+     *
+     * @param fileName the jar's published file name, used to determine its classifier
+     * @return false if the jar has no embedded pom.properties and cannot be installed this way
+     */
+    public boolean addJar(File jarFile, String fileName) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            ZipEntry propertiesEntry = findPomProperties(zipFile, fileName);
+            if (propertiesEntry == null) {
+                return false;
+            }
+
+            Properties pomProperties = new Properties();
+            try (InputStream in = zipFile.getInputStream(propertiesEntry)) {
+                pomProperties.load(in);
+            }
+            String groupId = pomProperties.getProperty("groupId");
+            String artifactId = pomProperties.getProperty("artifactId");
+            String version = pomProperties.getProperty("version");
+            if (groupId == null || artifactId == null || version == null) {
+                return false;
+            }
+
+            String classifier = "";
+            String baseName = fileName.replaceFirst("\\.jar$", "");
+            if (baseName.startsWith(artifactId + "-" + version + "-")) {
+                classifier = baseName.substring((artifactId + "-" + version + "-").length());
+            }
+            artifacts.add(new DefaultArtifact(groupId, artifactId, classifier, "jar", version).setFile(jarFile));
+
+            String coordinates = groupId + ":" + artifactId + ":" + version;
+            ZipEntry pomEntry = zipFile.getEntry(propertiesEntry.getName().replaceFirst("pom\\.properties$", "pom.xml"));
+            if (pomEntry != null && installedPoms.add(coordinates)) {
+                File pomFile = new File(stagingDirectory, artifactId + "-" + version + "-" + installedPoms.size() + ".pom");
+                try (InputStream in = zipFile.getInputStream(pomEntry);
+                     OutputStream out = Files.newOutputStream(pomFile.toPath())) {
+                    IOUtils.copy(in, out);
+                }
+                artifacts.add(new DefaultArtifact(groupId, artifactId, "", "pom", version).setFile(pomFile));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the pom.properties describing the jar. Shaded jars can contain several, so prefer the one whose
+     * artifactId matches the file name.
+     */
+    private static ZipEntry findPomProperties(ZipFile zipFile, String fileName) {
+        List<ZipEntry> candidates = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.getName().startsWith("META-INF/maven/") && entry.getName().endsWith("/pom.properties")) {
+                candidates.add(entry);
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        for (ZipEntry candidate : candidates) {
+            String[] path = candidate.getName().split("/");
+            if (path.length == 5 && fileName.startsWith(path[3] + "-")) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public List<Artifact> getArtifacts() {
+        return Collections.unmodifiableList(artifacts);
+    }
+
+    /**
+     * Installs everything added so far in one request.
+     */
+    public void install() throws InstallationException, IOException {
+        if (artifacts.isEmpty()) {
+            return;
+        }
+        InstallRequest request = new InstallRequest();
+        request.setArtifacts(artifacts);
+        if (locks == null) {
+            repositorySystem.install(session, request);
+            return;
+        }
+
+        //always lock in the same order so concurrent installs of overlapping artifacts cannot deadlock
+        Set<String> lockKeys = new TreeSet<>();
+        for (Artifact artifact : artifacts) {
+            String baseName = artifact.getArtifactId() + "-" + artifact.getVersion();
+            if (!artifact.getClassifier().isEmpty()) {
+                baseName += "-" + artifact.getClassifier();
+            }
+            lockKeys.add(getInstallLockKey(baseName));
+        }
+
+        List<FileLocks.Lock> held = new ArrayList<>();
+        try {
+            for (String lockKey : lockKeys) {
+                held.add(locks.lock(lockKey));
+            }
+            repositorySystem.install(session, request);
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        FileUtils.deleteDirectory(stagingDirectory);
+    }
+}
@@ -0,0 +1,151 @@
+package liquibase.sdk.util;
+
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supplies scatter stores for {@link org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator} that keep
+ * their content in memory while all stores together stay within a byte budget.
+ * <p>
+ * A store that would push the total over the budget keeps what it already has in memory and writes the rest to a temp
+ * file, so normal-sized archives are built without touching the filesystem. The budget counts the size of the
+ * stores' buffers rather than the bytes written to them, so unused capacity left by growing a buffer is counted too.
+ * Memory is returned to the budget when a store is closed. A budget of 0 puts everything on disk.
+ */
+public class BudgetedBackingStoreSupplier implements ScatterGatherBackingStoreSupplier {
+
+    private final long budget;
+    private final File tempDirectory;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    /**
+     * @param tempDirectory where to spill to, or null for the default temp directory
+     */
+    public BudgetedBackingStoreSupplier(long budget, File tempDirectory) {
+        this.budget = budget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public ScatterGatherBackingStore get() {
+        return new Store();
+    }
+
+    /**
+     * Bytes currently allocated in memory by open stores, including unused buffer capacity
+     */
+    public long getUsedBytes() {
+        return used.get();
+    }
+
+    /**
+     * Total bytes that did not fit in the budget and were written to disk
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    private boolean reserve(long length) {
+        while (true) {
+            long current = used.get();
+            if (current + length > budget) {
+                return false;
+            }
+            if (used.compareAndSet(current, current + length)) {
+                return true;
+            }
+        }
+    }
+
+    private class Store implements ScatterGatherBackingStore {
+        private byte[] memory = new byte[0];
+        private int memoryLength;
+        private File spillFile;
+        private OutputStream spillStream;
+        private boolean closed;
+
+        @Override
+        public void writeOut(byte[] data, int offset, int length) throws IOException {
+            if (spillFile == null && ensureCapacity((long) memoryLength + length)) {
+                System.arraycopy(data, offset, memory, memoryLength, length);
+                memoryLength += length;
+                return;
+            }
+
+            if (spillFile == null) {
+                spillFile = File.createTempFile("liquibase-scatter-", ".tmp", tempDirectory);
+                spillStream = Files.newOutputStream(spillFile.toPath());
+            }
+            spillStream.write(data, offset, length);
+            spilledBytes.addAndGet(length);
+        }
+
+        /**
+         * Grows the buffer to hold at least required bytes, reserving the added capacity in the budget. The buffer
+         * doubles when the budget allows it, and otherwise only grows to the required size.
+         *
+         * @return false if the budget has no room for the required size
+         */
+        private boolean ensureCapacity(long required) {
+            if (required <= memory.length) {
+                return true;
+            }
+            if (required > Integer.MAX_VALUE - 8) {
+                return false;
+            }
+            long doubled = Math.max(required, Math.min(memory.length * 2L, Integer.MAX_VALUE - 8));
+            long capacity;
+            if (reserve(doubled - memory.length)) {
+                capacity = doubled;
+            } else if (reserve(required - memory.length)) {
+                capacity = required;
+            } else {
+                return false;
+            }
+            memory = Arrays.copyOf(memory, (int) capacity);
+            return true;
+        }
+
+        @Override
+        public void closeForWriting() throws IOException {
+            if (spillStream != null) {
+                spillStream.close();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream memoryStream = new ByteArrayInputStream(memory, 0, memoryLength);
+            if (spillFile == null) {
+                return memoryStream;
+            }
+            return new SequenceInputStream(memoryStream, Files.newInputStream(spillFile.toPath()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeForWriting();
+            used.addAndGet(-memory.length);
+            memory = null;
+            memoryLength = 0;
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile.toPath());
+            }
+        }
+    }
+}
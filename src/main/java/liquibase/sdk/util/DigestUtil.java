@@ -0,0 +1,98 @@
+package liquibase.sdk.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+public class DigestUtil {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Computes all the given digests of the file in a single read.
+     * The file is read through a large direct buffer rather than memory-mapped so it can be moved or deleted right after.
+     */
+    public static Map<Algorithm, String> digest(File file, Collection<Algorithm> algorithms) throws IOException {
+        Map<Algorithm, MessageDigest> digests = new EnumMap<>(Algorithm.class);
+        for (Algorithm algorithm : algorithms) {
+            digests.put(algorithm, DigestUtils.getDigest(algorithm.getJavaName()));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                for (MessageDigest digest : digests.values()) {
+                    buffer.mark();
+                    digest.update(buffer);
+                    buffer.reset();
+                }
+                buffer.clear();
+            }
+        }
+
+        Map<Algorithm, String> returnMap = new EnumMap<>(Algorithm.class);
+        for (Map.Entry<Algorithm, MessageDigest> entry : digests.entrySet()) {
+            returnMap.put(entry.getKey(), Hex.encodeHexString(entry.getValue().digest()));
+        }
+        return returnMap;
+    }
+
+    public enum Algorithm {
+        MD5("MD5", "md5"),
+        SHA1("SHA-1", "sha1"),
+        SHA256("SHA-256", "sha256"),
+        SHA512("SHA-512", "sha512");
+
+        private final String javaName;
+        private final String extension;
+
+        Algorithm(String javaName, String extension) {
+            this.javaName = javaName;
+            this.extension = extension;
+        }
+
+        public String getJavaName() {
+            return javaName;
+        }
+
+        /**
+         * File extension used for checksum files, without the leading "."
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Parses a comma separated list of algorithms like "md5,sha1,sha256".
+         *
+         * @throws IllegalArgumentException if an algorithm is not supported
+         */
+        public static Set<Algorithm> parseList(String algorithms) {
+            Set<Algorithm> returnSet = EnumSet.noneOf(Algorithm.class);
+            for (String name : algorithms.split("\\s*,\\s*")) {
+                if (name.trim().isEmpty()) {
+                    continue;
+                }
+                Algorithm found = null;
+                for (Algorithm algorithm : values()) {
+                    if (algorithm.extension.equalsIgnoreCase(name.trim()) || algorithm.javaName.equalsIgnoreCase(name.trim())) {
+                        found = algorithm;
+                    }
+                }
+                if (found == null) {
+                    throw new IllegalArgumentException("Unsupported checksum algorithm: " + name + ". Supported algorithms are md5, sha1, sha256 and sha512");
+                }
+                returnSet.add(found);
+            }
+            return returnSet;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package liquibase.sdk.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Checks the integrity of a download while it is written, so a corrupt file is detected without reading it again.
+ * <p>
+ * The content is digested as it streams through and compared to the expected length and digests. Zip content, which
+ * includes jars, is also inflated on the way through so the CRC of every entry is checked and truncated archives fail.
+ */
+public class DownloadVerifier {
+
+    private final Map<DigestUtil.Algorithm, String> expectedDigests = new EnumMap<>(DigestUtil.Algorithm.class);
+    private long expectedLength = -1;
+    private boolean validateZip;
+
+    /**
+     * Expected length of the content, or -1 if not known
+     */
+    public void setExpectedLength(long expectedLength) {
+        this.expectedLength = expectedLength;
+    }
+
+    public void setValidateZip(boolean validateZip) {
+        this.validateZip = validateZip;
+    }
+
+    public void addExpectedDigest(DigestUtil.Algorithm algorithm, String hexDigest) {
+        expectedDigests.put(algorithm, hexDigest.trim().toLowerCase());
+    }
+
+    /**
+     * Copies the content to the output, checking it along the way.
+     *
+     * @param contentLength length reported by the server, or -1 if not known
+     * @return the content's digests: SHA-256 plus every algorithm with an expected digest
+     * @throws CorruptDownloadException if the content does not match what was expected
+     */
+    public Map<DigestUtil.Algorithm, String> copy(InputStream in, OutputStream out, long contentLength) throws IOException {
+        Map<DigestUtil.Algorithm, MessageDigest> digests = new EnumMap<>(DigestUtil.Algorithm.class);
+        digests.put(DigestUtil.Algorithm.SHA256, DigestUtils.getDigest(DigestUtil.Algorithm.SHA256.getJavaName()));
+        for (DigestUtil.Algorithm algorithm : expectedDigests.keySet()) {
+            digests.put(algorithm, DigestUtils.getDigest(algorithm.getJavaName()));
+        }
+
+        DigestingInputStream content = new DigestingInputStream(new TeeInputStream(in, out), digests);
+        if (validateZip) {
+            validateZip(content);
+        }
+        //whatever the zip validation did not need to read, such as the central directory
+        IOUtils.copy(content, NullOutputStream.INSTANCE);
+
+        if (contentLength >= 0 && content.length != contentLength) {
+            throw new CorruptDownloadException("Received " + content.length + " bytes but the server sent a length of " + contentLength);
+        }
+        if (expectedLength >= 0 && content.length != expectedLength) {
+            throw new CorruptDownloadException("Received " + content.length + " bytes but expected " + expectedLength);
+        }
+
+        Map<DigestUtil.Algorithm, String> returnMap = new EnumMap<>(DigestUtil.Algorithm.class);
+        for (Map.Entry<DigestUtil.Algorithm, MessageDigest> entry : digests.entrySet()) {
+            returnMap.put(entry.getKey(), Hex.encodeHexString(entry.getValue().digest()));
+        }
+        for (Map.Entry<DigestUtil.Algorithm, String> expected : expectedDigests.entrySet()) {
+            String actual = returnMap.get(expected.getKey());
+            if (!actual.equals(expected.getValue())) {
+                throw new CorruptDownloadException(expected.getKey().getJavaName() + " checksum " + actual + " does not match the expected " + expected.getValue());
+            }
+        }
+        return returnMap;
+    }
+
+    /**
+     * Reads every entry, which makes {@link ZipInputStream} check the entry's CRC and size.
+     */
+    private static void validateZip(InputStream content) throws IOException {
+        ZipInputStream zip = new ZipInputStream(CloseShieldInputStream.wrap(content));
+        byte[] buffer = new byte[64 * 1024];
+        int entries = 0;
+        try {
+            while (zip.getNextEntry() != null) {
+                entries++;
+                while (zip.read(buffer) != -1) {
+                    //only reading to check the entry
+                }
+            }
+        } catch (ZipException e) {
+            if (e.getMessage() != null && e.getMessage().contains("EXT descriptor")) {
+                //a valid layout ZipInputStream cannot stream, so the entries cannot be checked this way
+                return;
+            }
+            throw new CorruptDownloadException("Invalid zip content: " + e.getMessage(), e);
+        } catch (EOFException e) {
+            throw new CorruptDownloadException("Zip content is truncated", e);
+        }
+
+        if (entries == 0) {
+            throw new CorruptDownloadException("Content is not a zip file");
+        }
+    }
+
+    /**
+     * Returns the checksum in the content of a checksum file, which is either the bare checksum or `checksum filename`.
+     */
+    public static String parseChecksumFile(String content) {
+        String trimmed = content.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        return trimmed.split("\\s+")[0].toLowerCase();
+    }
+
+    private static class DigestingInputStream extends FilterInputStream {
+        private final Map<DigestUtil.Algorithm, MessageDigest> digests;
+        private long length;
+
+        private DigestingInputStream(InputStream in, Map<DigestUtil.Algorithm, MessageDigest> digests) {
+            super(in);
+            this.digests = digests;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                for (MessageDigest digest : digests.values()) {
+                    digest.update((byte) read);
+                }
+                length++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                for (MessageDigest digest : digests.values()) {
+                    digest.update(b, off, read);
+                }
+                length += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            //skipped bytes must still be digested and pass through the tee
+            if (n <= 0) {
+                return 0;
+            }
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Thrown when downloaded content does not match what was expected. Downloading again may succeed.
+     */
+    public static class CorruptDownloadException extends IOException {
+        public CorruptDownloadException(String message) {
+            super(message);
+        }
+
+        public CorruptDownloadException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
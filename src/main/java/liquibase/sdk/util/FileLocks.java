@@ -0,0 +1,136 @@
+package liquibase.sdk.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Named locks that exclude both other threads in this JVM and other processes on the same machine.
+ * <p>
+ * Each key is backed by a lock file in the given directory. File locks are held per process, so threads of this JVM
+ * first take an in-memory lock for the same file. Lock files are left in place after use, because deleting one while
+ * another process waits on it would let a third process lock a new file with the same name.
+ */
+public class FileLocks {
+
+    private static final Map<String, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+    private final File directory;
+
+    public FileLocks(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Blocks until the lock for the given key is held. Locks are not reentrant.
+     */
+    public Lock lock(String key) throws IOException {
+        File lockFile = new File(directory, key.replaceAll("[^A-Za-z0-9._-]", "_") + ".lock");
+        ReentrantLock jvmLock = jvmLocks.computeIfAbsent(lockFile.getAbsolutePath(), path -> new ReentrantLock());
+        if (jvmLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Lock " + key + " is already held by this thread");
+        }
+
+        try {
+            jvmLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for lock " + key);
+        }
+
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.lock();
+            return new Lock(jvmLock, channel);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the given file in {@link #getDirectory()}, creating it first if it does not exist yet.
+     * <p>
+     * Concurrent callers for the same file name, in this or other processes, wait while one of them creates it and
+     * then reuse the result. The creator writes to a temp file that is moved into place once complete, so a partially
+     * written file is never returned. Reused files get a new modification time, so it reflects when they were last used.
+     */
+    public File getOrCreate(String fileName, Creator creator) throws IOException {
+        return create(fileName, creator, true);
+    }
+
+    /**
+     * Like {@link #getOrCreate(String, Creator)}, but always creates the file and replaces any existing one once complete.
+     */
+    public File create(String fileName, Creator creator) throws IOException {
+        return create(fileName, creator, false);
+    }
+
+    private File create(String fileName, Creator creator, boolean reuseExisting) throws IOException {
+        File target = new File(directory, fileName);
+        try (Lock ignored = lock(fileName)) {
+            if (reuseExisting && target.exists()) {
+                target.setLastModified(System.currentTimeMillis());
+                return target;
+            }
+
+            File tempFile = File.createTempFile(fileName + "-", ".part", directory);
+            try {
+                creator.create(tempFile);
+                try {
+                    Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            return target;
+        }
+    }
+
+    public interface Creator {
+        /**
+         * Writes the content to the given file, which already exists and is empty
+         */
+        void create(File file) throws IOException;
+    }
+
+    public static class Lock implements Closeable {
+        private final ReentrantLock jvmLock;
+        private final FileChannel channel;
+
+        private Lock(ReentrantLock jvmLock, FileChannel channel) {
+            this.jvmLock = jvmLock;
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            //closing the channel also releases the file lock
+            try {
+                channel.close();
+            } finally {
+                jvmLock.unlock();
+            }
+        }
+    }
+}
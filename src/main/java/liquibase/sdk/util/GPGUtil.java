@@ -3,11 +3,27 @@ package liquibase.sdk.util;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class GPGUtil {
 
+    /**
+     * Returns the passphrase from the GPG_PASSWORD environment variable, or null if it is not set.
+     * Keys without a passphrase do not need it.
+     */
+    public static String getPassphrase() {
+        if (StringUtils.trimToNull(System.getenv("GPG_PASSWORD")) == null) {
+            return null;
+        }
+        return System.getenv("GPG_PASSWORD");
+    }
+
+    /**
+     * Signs the file by running an external gpg process. Safe to call from multiple threads.
+     */
     public static void sign(String filename, String gpgExecutable) throws IOException {
         File file = new File(filename).getAbsoluteFile();
         ProcessBuilder builder = new ProcessBuilder();
@@ -17,28 +33,48 @@ public class GPGUtil {
             gpgExecutable = "gpg";
         }
 
-        if (StringUtils.trimToNull(System.getenv("GPG_PASSWORD")) == null) {
-            throw new IOException("GPG_PASSWORD not set");
-        }
-
+        String passphrase = getPassphrase();
 
-        builder.command(gpgExecutable, "--batch", "--pinentry-mode", "loopback", "--passphrase-fd", "0", "-ab", file.getName());
+        builder.command(gpgExecutable, "--batch", "--yes", "--pinentry-mode", "loopback", "--passphrase-fd", "0", "-ab", file.getName());
+        builder.redirectErrorStream(true);
 
         builder.directory(file.getParentFile());
         Process process = builder.start();
+
+        List<String> output = new ArrayList<>();
+        Thread gobblerThread = new Thread(new StreamGobbler(process.getInputStream(), line -> {
+            synchronized (output) {
+                output.add(line);
+            }
+        }), "gpg-output-" + file.getName());
+        gobblerThread.setDaemon(true);
+        gobblerThread.start();
+
         try (OutputStream outputStream = process.getOutputStream()) {
-            outputStream.write(System.getenv("GPG_PASSWORD").getBytes());
+            if (passphrase != null) {
+                outputStream.write(passphrase.getBytes(StandardCharsets.UTF_8));
+            }
         }
 
-        StreamGobbler streamGobbler = new StreamGobbler(process.getInputStream(), System.out::println);
-        Executors.newSingleThreadExecutor().submit(streamGobbler);
-        int exitCode = 0;
+        int exitCode;
         try {
             exitCode = process.waitFor();
+            gobblerThread.join();
         } catch (InterruptedException e) {
-            //
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while signing " + file);
+        }
+
+        synchronized (output) {
+            for (String line : output) {
+                System.out.println(line);
+            }
+        }
+
+        if (exitCode != 0) {
+            throw new IOException("gpg exited with code " + exitCode + " while signing " + file);
         }
-        assert exitCode == 0;
     }
 
     private static class StreamGobbler implements Runnable {
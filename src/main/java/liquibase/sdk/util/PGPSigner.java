@@ -0,0 +1,115 @@
+package liquibase.sdk.util;
+
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.*;
+import org.bouncycastle.openpgp.operator.jcajce.JcaKeyFingerprintCalculator;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.Provider;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Creates detached, ASCII-armored OpenPGP signatures in-process, the same as "gpg -ab" would.
+ * <p>
+ * The secret key is loaded and unlocked once. {@link #sign(File)} is safe to call from multiple threads.
+ */
+public class PGPSigner {
+
+    private static final Provider PROVIDER = new BouncyCastleProvider();
+
+    private final PGPPublicKey publicKey;
+    private final PGPPrivateKey privateKey;
+
+    private PGPSigner(PGPPublicKey publicKey, PGPPrivateKey privateKey) {
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+    }
+
+    /**
+     * Loads the signing key from an exported secret keyring, armored or binary.
+     *
+     * @param keyId the key id or fingerprint (or a suffix of it) to use. If null, the first signing key in the file is used.
+     * @param passphrase null if the key is not passphrase-protected
+     */
+    public static PGPSigner load(File secretKeyFile, String keyId, String passphrase) throws IOException {
+        PGPSecretKey secretKey = null;
+        try (InputStream input = PGPUtil.getDecoderStream(Files.newInputStream(secretKeyFile.toPath()))) {
+            PGPSecretKeyRingCollection keyRings = new PGPSecretKeyRingCollection(input, new JcaKeyFingerprintCalculator());
+
+            Iterator<PGPSecretKeyRing> ringIterator = keyRings.getKeyRings();
+            while (secretKey == null && ringIterator.hasNext()) {
+                Iterator<PGPSecretKey> keyIterator = ringIterator.next().getSecretKeys();
+                while (keyIterator.hasNext()) {
+                    PGPSecretKey candidate = keyIterator.next();
+                    if (candidate.isSigningKey() && !candidate.isPrivateKeyEmpty() && matchesKeyId(candidate, keyId)) {
+                        secretKey = candidate;
+                        break;
+                    }
+                }
+            }
+        } catch (PGPException e) {
+            throw new IOException("Cannot read secret key from " + secretKeyFile.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+
+        if (secretKey == null) {
+            throw new IOException("No signing key" + (keyId == null ? "" : " matching " + keyId) + " in " + secretKeyFile.getAbsolutePath());
+        }
+
+        try {
+            PGPPrivateKey privateKey = secretKey.extractPrivateKey(new JcePBESecretKeyDecryptorBuilder()
+                    .setProvider(PROVIDER)
+                    .build(passphrase == null ? new char[0] : passphrase.toCharArray()));
+            return new PGPSigner(secretKey.getPublicKey(), privateKey);
+        } catch (PGPException e) {
+            if (passphrase == null) {
+                throw new IOException("Key " + Long.toHexString(secretKey.getKeyID()) + " is passphrase-protected but GPG_PASSWORD is not set", e);
+            }
+            throw new IOException("Cannot unlock key " + Long.toHexString(secretKey.getKeyID()) + ". Check GPG_PASSWORD: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean matchesKeyId(PGPSecretKey key, String keyId) {
+        if (keyId == null) {
+            return true;
+        }
+        String wanted = keyId.replaceFirst("^0x", "").replace(" ", "").toUpperCase(Locale.ROOT);
+        String fingerprint = Hex.toHexString(key.getPublicKey().getFingerprint()).toUpperCase(Locale.ROOT);
+        return fingerprint.endsWith(wanted);
+    }
+
+    /**
+     * Writes a detached signature of the file to file.asc
+     */
+    public void sign(File file) throws IOException {
+        try {
+            PGPSignatureGenerator generator = new PGPSignatureGenerator(new JcaPGPContentSignerBuilder(publicKey.getAlgorithm(), HashAlgorithmTags.SHA256).setProvider(PROVIDER));
+            generator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream input = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    generator.update(buffer, 0, read);
+                }
+            }
+
+            File signatureFile = new File(file.getAbsolutePath() + ".asc");
+            try (OutputStream output = Files.newOutputStream(signatureFile.toPath());
+                 ArmoredOutputStream armored = new ArmoredOutputStream(output)) {
+                generator.generate().encode(armored);
+            }
+        } catch (PGPException e) {
+            throw new IOException("Cannot sign " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package liquibase.sdk.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All parallel work in the plugin goes through here. On JDK 21+ tasks run on virtual threads, so tasks waiting on the
+ * network or on other processes do not each hold a platform thread. Older JDKs use pools of daemon platform threads.
+ * Either way, the configured thread counts limit how many tasks run at once.
+ * <p>
+ * Virtual threads can be turned off with -Dliquibase.sdk.virtualThreads=false.
+ */
+public class ParallelUtil {
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
+    /**
+     * Returns true if {@link #newExecutor(int)} runs tasks on virtual threads.
+     */
+    public static boolean isUsingVirtualThreads() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Returns the given thread count, or the number of available processors if it is not a positive number.
+     */
+    public static int threadCount(int configured) {
+        if (configured > 0) {
+            return configured;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs the task for each item on at most maxThreads threads and returns the results in the same order as the items.
+     * <p>
+     * All tasks run to completion even if some fail. The failure of the earliest failing item is then thrown, with the
+     * failures of later items attached as suppressed exceptions, so the reported error does not depend on thread timing.
+     */
+    public static <T, R> List<R> map(Collection<T> items, int maxThreads, Task<T, R> task) throws IOException {
+        List<R> results = new ArrayList<>();
+        if (items.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = newExecutor(Math.min(maxThreads, items.size()));
+        try {
+            List<Future<R>> futures = new ArrayList<>();
+            for (T item : items) {
+                futures.add(executor.submit(() -> task.run(item)));
+            }
+
+            Throwable failure = null;
+            for (Future<R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                    results.add(null);
+                }
+            }
+
+            if (failure != null) {
+                throw toIOException(failure);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parallel tasks");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the producer for each item on at most maxThreads threads and passes each result to the consumer on the calling
+     * thread as soon as it is ready, so producing and consuming overlap. Results are consumed in completion order.
+     * <p>
+     * At most maxPending items are produced but not yet consumed at any time: producers wait for the consumer to catch
+     * up before starting another item. The first failure stops the pipeline and is thrown. Results that were produced
+     * but not successfully consumed by then are passed to {@link Consumer#discard(Object)}.
+     */
+    public static <T, R> void pipeline(Collection<T> items, int maxThreads, int maxPending, Task<T, R> producer, Consumer<R> consumer) throws IOException {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Semaphore pending = new Semaphore(Math.max(1, maxPending));
+        ExecutorService executor = newExecutor(Math.min(Math.min(maxThreads, Math.max(1, maxPending)), items.size()));
+        CompletionService<R> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<R>> futures = new ArrayList<>();
+        try {
+            for (T item : items) {
+                futures.add(completionService.submit(() -> {
+                    pending.acquire();
+                    return producer.run(item);
+                }));
+            }
+
+            for (int i = 0; i < items.size(); i++) {
+                Future<R> future = completionService.take();
+                R result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    throw toIOException(e.getCause());
+                }
+                futures.remove(future);
+                try {
+                    consumer.accept(result);
+                } catch (Exception e) {
+                    consumer.discard(result);
+                    throw toIOException(e);
+                } finally {
+                    pending.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parallel tasks");
+        } finally {
+            executor.shutdownNow();
+            for (Future<R> future : futures) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        consumer.discard(future.get());
+                    } catch (Exception ignored) {
+                        //failed or interrupted tasks have nothing to discard
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an executor running at most maxThreads tasks at once, for callers that need to manage an executor themselves.
+     * Uses virtual threads when available, otherwise a pool of daemon threads. The caller is responsible for shutting it down.
+     */
+    public static ExecutorService newExecutor(int maxThreads) {
+        if (virtualThreadFactory != null) {
+            return new BoundedExecutor(newThreadPerTaskExecutor(virtualThreadFactory), maxThreads);
+        }
+        return newPlatformExecutor(maxThreads);
+    }
+
+    /**
+     * Creates a fixed pool of daemon platform threads, for work that depends on reusing threads, such as tasks keeping
+     * per-thread state. The caller is responsible for shutting it down.
+     */
+    public static ExecutorService newPlatformExecutor(int maxThreads) {
+        return Executors.newFixedThreadPool(Math.max(1, maxThreads), daemonThreadFactory());
+    }
+
+    /**
+     * Returns a factory for virtual threads, or null if the JDK does not support them or they are disabled.
+     * Looked up reflectively because the plugin is compiled for Java 8.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        if (!Boolean.parseBoolean(System.getProperty("liquibase.sdk.virtualThreads", "true"))) {
+            return null;
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "liquibase-sdk-virtual-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            newThreadPerTaskExecutor(factory).shutdown();
+            return factory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //before JDK 21, or a JDK where virtual threads are still a preview feature
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor: " + e.getMessage(), e);
+        }
+    }
+
+    private static IOException toIOException(Throwable e) {
+        if (e instanceof IOException) {
+            return (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IOException(e.getMessage(), e);
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "liquibase-sdk-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts each task on its own thread from the delegate, but lets at most maxRunning of them run at once.
+     * Waiting threads are cheap when the delegate creates virtual threads.
+     */
+    static class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore running;
+        private volatile boolean stopped;
+
+        BoundedExecutor(ExecutorService delegate, int maxRunning) {
+            this.delegate = delegate;
+            this.running = new Semaphore(Math.max(1, maxRunning));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    running.acquire();
+                } catch (InterruptedException e) {
+                    cancel(command);
+                    return;
+                }
+                try {
+                    if (stopped) {
+                        cancel(command);
+                    } else {
+                        command.run();
+                    }
+                } finally {
+                    running.release();
+                }
+            });
+        }
+
+        /**
+         * Called for tasks stopped by shutdownNow before they started
+         */
+        private void cancel(Runnable command) {
+            if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            stopped = true;
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    public interface Task<T, R> {
+        R run(T item) throws Exception;
+    }
+
+    public interface Consumer<R> {
+        void accept(R result) throws Exception;
+
+        /**
+         * Called for results that were produced but will not be consumed because the pipeline failed.
+         */
+        default void discard(R result) {
+        }
+    }
+}
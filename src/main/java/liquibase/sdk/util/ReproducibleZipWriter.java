@@ -0,0 +1,144 @@
+package liquibase.sdk.util;
+
+import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
+import org.apache.commons.compress.archivers.zip.StreamCompressor;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes zips whose bytes depend only on the names and contents of the files added, so the same files always give the
+ * same zip.
+ * <p>
+ * Entries are written in name order with a fixed modification time. With parallel compression each file is compressed
+ * into its own scatter store, and the stores are written back in name order once all are done, so the order does not
+ * depend on which thread compressed which file.
+ */
+public class ReproducibleZipWriter {
+
+    /**
+     * Zips store local time, so the fixed time is taken in the default time zone to write the same value everywhere.
+     */
+    static final long ENTRY_TIME = LocalDateTime.of(2000, 1, 1, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    private final int compressionLevel;
+    private BudgetedBackingStoreSupplier backingStoreSupplier;
+    private int threads = 1;
+
+    /**
+     * @param compressionLevel deflate level from 0 to 9, or -1 for the standard level
+     */
+    public ReproducibleZipWriter(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Compresses files on the given number of threads, buffering their compressed content in stores from the given supplier.
+     */
+    public void setParallelCompression(BudgetedBackingStoreSupplier backingStoreSupplier, int threads) {
+        this.backingStoreSupplier = backingStoreSupplier;
+        this.threads = threads;
+    }
+
+    /**
+     * Writes the files to zipFile, along with the entries of existingZip that no file replaces.
+     *
+     * @param existingZip zip to carry entries over from without recompressing them, or null
+     * @return the names of all entries written
+     */
+    public Set<String> write(File zipFile, Collection<File> files, File existingZip) throws IOException {
+        Map<String, File> filesByName = new TreeMap<>();
+        for (File file : files) {
+            filesByName.put(file.getName(), file);
+        }
+
+        List<ScatterZipOutputStream> opened = Collections.synchronizedList(new ArrayList<>());
+        try (ZipFile carryFrom = existingZip == null ? null : new ZipFile(existingZip);
+             ZipArchiveOutputStream out = new ZipArchiveOutputStream(zipFile)) {
+            out.setLevel(compressionLevel);
+
+            Map<String, ZipArchiveEntry> carried = new TreeMap<>();
+            if (carryFrom != null) {
+                for (ZipArchiveEntry entry : Collections.list(carryFrom.getEntries())) {
+                    if (!filesByName.containsKey(entry.getName())) {
+                        carried.put(entry.getName(), entry);
+                    }
+                }
+            }
+
+            Map<String, ScatterZipOutputStream> compressed = new HashMap<>();
+            if (backingStoreSupplier != null) {
+                List<ScatterZipOutputStream> scatters = ParallelUtil.map(filesByName.values(), threads, file -> compress(file, opened));
+                int i = 0;
+                for (String name : filesByName.keySet()) {
+                    compressed.put(name, scatters.get(i++));
+                }
+            }
+
+            Set<String> names = new TreeSet<>(filesByName.keySet());
+            names.addAll(carried.keySet());
+            for (String name : names) {
+                File file = filesByName.get(name);
+                if (file == null) {
+                    try (InputStream rawContent = carryFrom.getRawInputStream(carried.get(name))) {
+                        out.addRawArchiveEntry(carried.get(name), rawContent);
+                    }
+                } else if (compressed.containsKey(name)) {
+                    compressed.get(name).writeTo(out);
+                } else {
+                    out.putArchiveEntry(createEntry(file));
+                    try (InputStream fileContent = Files.newInputStream(file.toPath())) {
+                        IOUtils.copy(fileContent, out);
+                    }
+                    out.closeArchiveEntry();
+                }
+            }
+            return names;
+        } finally {
+            for (ScatterZipOutputStream scatter : opened) {
+                scatter.close();
+            }
+        }
+    }
+
+    private ScatterZipOutputStream compress(File file, List<ScatterZipOutputStream> opened) throws IOException {
+        ScatterGatherBackingStore store = backingStoreSupplier.get();
+        ScatterZipOutputStream scatter = new ScatterZipOutputStream(store, StreamCompressor.create(compressionLevel, store));
+        opened.add(scatter);
+        scatter.addArchiveEntry(ZipArchiveEntryRequest.createZipArchiveEntryRequest(createEntry(file), () -> {
+            try {
+                return Files.newInputStream(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        return scatter;
+    }
+
+    /**
+     * Jars and other archives are already compressed, so they are stored rather than deflated again.
+     */
+    private static ZipArchiveEntry createEntry(File file) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(file.getName());
+        entry.setTime(ENTRY_TIME);
+        if (file.getName().endsWith(".jar") || file.getName().endsWith(".zip") || file.getName().endsWith(".gz")) {
+            entry.setMethod(ZipEntry.STORED);
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        return entry;
+    }
+}
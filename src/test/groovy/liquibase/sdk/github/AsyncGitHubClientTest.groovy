@@ -0,0 +1,100 @@
+package liquibase.sdk.github
+
+import org.kohsuke.github.GHWorkflowRun
+import org.kohsuke.github.GitHub
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AsyncGitHubClientTest extends Specification {
+
+    def "findLastBuildForBranch resolves the branch then finds its build"() {
+        when:
+        def run = Mock(GHWorkflowRun)
+        def filters = []
+        def client = new GitHubClient(Mock(GitHub), LoggerFactory.getLogger(getClass())) {
+            @Override
+            String findMatchingBranch(String repo, String... branches) throws IOException {
+                return branches[0] == "missing" ? null : "fork:" + branches[0]
+            }
+
+            @Override
+            GHWorkflowRun findLastBuild(String repo, GitHubClient.BuildFilter buildFilter, String workflowId) throws IOException {
+                filters.add(buildFilter)
+                return run
+            }
+        }
+        def async = new AsyncGitHubClient(client, 2)
+        def found = AsyncGitHubClient.await(async.findLastBuildForBranch("liquibase/liquibase", "feature", "ci.yml", true))
+        def missing = AsyncGitHubClient.await(async.findLastBuildForBranch("liquibase/liquibase", "missing", "ci.yml", true))
+
+        then:
+        found.label == "fork:feature"
+        found.run == run
+        filters*.fork == ["fork"]
+        filters*.branch == ["feature"]
+        missing.label == null
+        missing.run == null
+
+        cleanup:
+        async?.close()
+    }
+
+    def "operations on different repos run at the same time"() {
+        when:
+        def bothStarted = new CountDownLatch(2)
+        def client = new GitHubClient(Mock(GitHub), LoggerFactory.getLogger(getClass())) {
+            @Override
+            String findMatchingBranch(String repo, String... branches) throws IOException {
+                bothStarted.countDown()
+                if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("Lookups did not overlap")
+                }
+                return repo + ":" + branches[0]
+            }
+        }
+        def async = new AsyncGitHubClient(client, 2)
+        def core = async.findMatchingBranch("liquibase/liquibase", "main")
+        def pro = async.findMatchingBranch("liquibase/liquibase-pro", "main")
+
+        then:
+        AsyncGitHubClient.await(core) == "liquibase/liquibase:main"
+        AsyncGitHubClient.await(pro) == "liquibase/liquibase-pro:main"
+
+        cleanup:
+        async?.close()
+    }
+
+    def "await rethrows the original exception"() {
+        when:
+        def client = new GitHubClient(Mock(GitHub), LoggerFactory.getLogger(getClass())) {
+            @Override
+            GHWorkflowRun findBuild(String repo, long runId) throws IOException {
+                throw new FileNotFoundException("No run " + runId)
+            }
+        }
+        def async = new AsyncGitHubClient(client, 1)
+        AsyncGitHubClient.await(async.findBuild("liquibase/liquibase", 42).thenApply { it.runNumber })
+
+        then:
+        def e = thrown(FileNotFoundException)
+        e.message == "No run 42"
+
+        cleanup:
+        async?.close()
+    }
+
+    def "close closes the GitHubClient and its transport"() {
+        given:
+        def transport = Mock(HttpTransport)
+        def async = new AsyncGitHubClient(new GitHubClient("token", transport, LoggerFactory.getLogger(getClass())), 2)
+
+        when:
+        async.close()
+
+        then:
+        1 * transport.close()
+    }
+}
@@ -69,4 +69,30 @@ class GitHubClientTest extends Specification {
         ["invalid", "local-branch", "master"]      | "local-branch"
         ["remote-branch", "local-branch", "master"] | "other:remote-branch"
     }
+
+    def "client without a token can be created and only fails once GitHub is needed"() {
+        when:
+        def client = new GitHubClient(null, GitHubClient.TransportType.ASYNC, LoggerFactory.getLogger(this.class))
+        def file = File.createTempFile("liquibase-test-", ".zip")
+
+        then:
+        notThrown(Exception)
+
+        when:
+        client.findBuild("liquibase/liquibase", 1)
+
+        then:
+        def e = thrown(IOException)
+        e.message.startsWith("Missing github token")
+
+        when:
+        client.downloadArtifact(new URL("http://localhost:1/artifact.zip"), file)
+
+        then:
+        e = thrown(IOException)
+        e.message.startsWith("Missing github token")
+
+        cleanup:
+        file?.delete()
+    }
 }
@@ -0,0 +1,241 @@
+package liquibase.sdk.github
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import liquibase.sdk.util.FileLocks
+import org.apache.commons.io.FileUtils
+import org.apache.commons.io.IOUtils
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class HttpBundleTest extends Specification {
+
+    private Path tempDir
+
+    private HttpServer server
+    private byte[] largeContent
+    private byte[] zipContent
+
+    def setup() {
+        tempDir = Files.createTempDirectory("liquibase-test-")
+        largeContent = new byte[200000]
+        new Random(1).nextBytes(largeContent)
+
+        def zipBytes = new ByteArrayOutputStream()
+        new ZipOutputStream(zipBytes).withCloseable { zip ->
+            zip.putNextEntry(new ZipEntry("liquibase-core-0-SNAPSHOT.jar"))
+            zip.write(largeContent)
+            zip.closeEntry()
+        }
+        zipContent = zipBytes.toByteArray()
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        server.executor = Executors.newCachedThreadPool()
+        server.createContext("/api") { HttpExchange exchange ->
+            def body = IOUtils.toByteArray(exchange.requestBody)
+            def response = ("{\"method\": \"" + exchange.requestMethod + "\", \"body\": \"" + new String(body, StandardCharsets.UTF_8) + "\"}").getBytes(StandardCharsets.UTF_8)
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, response.length)
+            exchange.responseBody.write(response)
+            exchange.close()
+        }
+        server.createContext("/large") { HttpExchange exchange ->
+            exchange.sendResponseHeaders(200, largeContent.length)
+            exchange.responseBody.write(largeContent)
+            exchange.close()
+        }
+        server.createContext("/artifact.zip") { HttpExchange exchange ->
+            exchange.responseHeaders.add("Location", url("/storage/artifact.zip").toExternalForm())
+            exchange.sendResponseHeaders(302, -1)
+            exchange.close()
+        }
+        server.createContext("/storage/artifact.zip") { HttpExchange exchange ->
+            exchange.sendResponseHeaders(200, zipContent.length)
+            exchange.responseBody.write(zipContent)
+            exchange.close()
+        }
+        server.start()
+    }
+
+    def cleanup() {
+        server?.stop(0)
+        FileUtils.deleteQuietly(tempDir.toFile())
+    }
+
+    def "replays recorded responses without the server"() {
+        given:
+        def bundle = new HttpBundle(tempDir.resolve("bundle").toFile())
+
+        when:
+        new RecordingHttpTransport(new BlockingHttpTransport(4), bundle).withCloseable { recorder ->
+            recorder.execute("GET", url("/api"), [:], null, null).withCloseable { IOUtils.toString(it.content, StandardCharsets.UTF_8) }
+            recorder.execute("POST", url("/api"), [:], "first".getBytes(StandardCharsets.UTF_8), "text/plain").close()
+            recorder.execute("POST", url("/api"), [:], "second".getBytes(StandardCharsets.UTF_8), "text/plain").close()
+            recorder.execute("GET", url("/artifact.zip"), ["Authorization": "token secret"], null, null).close()
+            recorder.execute("GET", url("/large"), [:], null, null).withCloseable { it.content.read(new byte[10]) }
+        }
+        server.stop(0)
+        def replay = new ReplayingHttpTransport(bundle)
+
+        then:
+        replay.execute("GET", url("/api"), [:], null, null).withCloseable { response ->
+            assert response.code == 200
+            assert response.getHeader("content-type") == "application/json"
+            IOUtils.toString(response.content, StandardCharsets.UTF_8)
+        } == '{"method": "GET", "body": ""}'
+        IOUtils.toString(replay.execute("POST", url("/api"), [:], "second".getBytes(StandardCharsets.UTF_8), "text/plain").content, StandardCharsets.UTF_8) == '{"method": "POST", "body": "second"}'
+        replay.execute("GET", url("/artifact.zip"), [:], null, null).getHeader("Location") == url("/storage/artifact.zip").toExternalForm()
+
+        and: "bodies closed early are still recorded whole"
+        def large = replay.execute("GET", url("/large"), [:], null, null)
+        large.contentLength == largeContent.length
+        Arrays.equals(IOUtils.toByteArray(large.content), largeContent)
+
+        and: "credentials are not stored"
+        !bundle.directory.listFiles().any { new String(it.bytes, StandardCharsets.ISO_8859_1).contains("secret") }
+        !bundle.directory.listFiles().any { it.name.endsWith(".part") }
+
+        when:
+        replay.execute("GET", url("/not-recorded"), [:], null, null)
+
+        then:
+        def e = thrown(FileNotFoundException)
+        e.message.contains("No recorded response for GET")
+    }
+
+    def "GitHubClient downloads from a replayed bundle without a token"() {
+        given:
+        def bundleDirectory = tempDir.resolve("bundle").toFile()
+        def recorded = tempDir.resolve("recorded.zip").toFile()
+        def replayed = tempDir.resolve("replayed.zip").toFile()
+
+        when:
+        def recordingClient = new GitHubClient("test-token", LoggerFactory.getLogger(getClass()))
+        recordingClient.setDownloadSegments(4)
+        recordingClient.setMinSegmentSize(1000)
+        recordingClient.setBundle(GitHubClient.BundleMode.RECORD, bundleDirectory)
+        recordingClient.downloadArtifact(url("/artifact.zip"), recorded)
+        server.stop(0)
+
+        def replayingClient = new GitHubClient(null as String, LoggerFactory.getLogger(getClass()))
+        replayingClient.setDownloadSegments(4)
+        replayingClient.setBundle(GitHubClient.BundleMode.REPLAY, bundleDirectory)
+        replayingClient.downloadArtifact(url("/artifact.zip"), replayed)
+
+        then:
+        recorded.bytes == zipContent
+        replayed.bytes == zipContent
+    }
+
+    def "GitHub API calls are recorded and replayed through the connector"() {
+        given:
+        def bundleDirectory = tempDir.resolve("bundle").toFile()
+        def apiResponses = [
+                "/user"                                    : '{"login": "test", "id": 1}',
+                "/repos/liquibase/liquibase"               : '{"id": 1, "name": "liquibase", "full_name": "liquibase/liquibase", "html_url": "https://github.com/liquibase/liquibase", "url": "https://api.github.com/repos/liquibase/liquibase", "owner": {"login": "liquibase"}}',
+                "/repos/liquibase/liquibase/actions/runs/42": '{"id": 42, "run_number": 7, "head_sha": "abc123", "name": "Build"}',
+        ]
+        def requestedPaths = []
+        def fakeGitHub = new HttpTransport() {
+            @Override
+            HttpTransport.Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) {
+                requestedPaths.add(url.path)
+                def json = apiResponses[url.path]
+                return response(json == null ? 404 : 200, json ?: '{"message": "Not Found"}')
+            }
+
+            @Override
+            void close() {
+            }
+        }
+
+        when:
+        def recordingClient = new GitHubClient("test-token", new RecordingHttpTransport(fakeGitHub, new HttpBundle(bundleDirectory)), LoggerFactory.getLogger(getClass()))
+        def recordedRun = recordingClient.findBuild("liquibase/liquibase", 42)
+
+        def replayingClient = new GitHubClient(null as String, LoggerFactory.getLogger(getClass()))
+        replayingClient.setBundle(GitHubClient.BundleMode.REPLAY, bundleDirectory)
+        def replayedRun = replayingClient.findBuild("liquibase/liquibase", 42)
+
+        then:
+        requestedPaths.contains("/repos/liquibase/liquibase/actions/runs/42")
+        recordedRun.runNumber == 7
+        replayedRun.runNumber == 7
+        replayedRun.headSha == "abc123"
+    }
+
+    def "recording downloads cached artifacts again so they can be replayed"() {
+        given:
+        def bundleDirectory = tempDir.resolve("bundle").toFile()
+        def apiResponses = [
+                "/repos/liquibase/liquibase"                         : '{"id": 1, "name": "liquibase", "full_name": "liquibase/liquibase", "html_url": "https://github.com/liquibase/liquibase", "url": "https://api.github.com/repos/liquibase/liquibase", "owner": {"login": "liquibase"}}',
+                "/repos/liquibase/liquibase/actions/runs/42"          : '{"id": 42, "run_number": 7, "head_sha": "abc123", "name": "Build", "created_at": "2024-01-01T00:00:00Z", "html_url": "https://github.com/liquibase/liquibase/actions/runs/42"}',
+                "/repos/liquibase/liquibase/actions/runs/42/artifacts": '{"total_count": 1, "artifacts": [{"id": 5, "name": "liquibase-artifacts", "archive_download_url": "' + url("/artifact.zip") + '"}]}',
+        ]
+        def fakeGitHub = new HttpTransport() {
+            @Override
+            HttpTransport.Response execute(String method, URL url, Map<String, String> headers, byte[] body, String contentType) {
+                def json = apiResponses[url.path]
+                return response(json == null ? 404 : 200, json ?: '{"message": "Not Found"}')
+            }
+
+            @Override
+            void close() {
+            }
+        }
+        def run = new GitHubClient("test-token", fakeGitHub, LoggerFactory.getLogger(getClass())).findBuild("liquibase/liquibase", 42)
+
+        def warmCache = new FileLocks(tempDir.resolve("warm-cache").toFile())
+        warmCache.getOrCreate("artifact-5.zip", { it.bytes = zipContent } as FileLocks.Creator)
+
+        when:
+        def recordingClient = new GitHubClient("test-token", LoggerFactory.getLogger(getClass()))
+        recordingClient.setBundle(GitHubClient.BundleMode.RECORD, bundleDirectory)
+        def recorded = recordingClient.downloadArtifact(run, "liquibase-artifacts", warmCache)
+        recordingClient.close()
+        server.stop(0)
+
+        def replayingClient = new GitHubClient(null as String, LoggerFactory.getLogger(getClass()))
+        replayingClient.setBundle(GitHubClient.BundleMode.REPLAY, bundleDirectory)
+        def replayed = replayingClient.downloadArtifact(run, "liquibase-artifacts", new FileLocks(tempDir.resolve("cold-cache").toFile()))
+
+        then:
+        recordingClient.isRecording()
+        recorded.bytes == zipContent
+        replayed.bytes == zipContent
+    }
+
+    private URL url(String path) {
+        return new URL("http://localhost:" + server.address.port + path)
+    }
+
+    static HttpTransport.Response response(int code, String json) {
+        def bytes = json.getBytes(StandardCharsets.UTF_8)
+        return new HttpTransport.Response() {
+            int getCode() { code }
+
+            String getReasonPhrase() { code == 200 ? "OK" : "Not Found" }
+
+            String getHeader(String name) { getHeaders()[name]?.get(0) }
+
+            Map<String, List<String>> getHeaders() {
+                def headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER)
+                headers["Content-Type"] = ["application/json"]
+                return headers
+            }
+
+            long getContentLength() { bytes.length }
+
+            InputStream getContent() { new ByteArrayInputStream(bytes) }
+
+            void close() {}
+        }
+    }
+}
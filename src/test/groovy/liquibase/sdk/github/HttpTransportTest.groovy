@@ -0,0 +1,138 @@
+package liquibase.sdk.github
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.apache.commons.io.IOUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Executors
+
+class HttpTransportTest extends Specification {
+
+    private HttpServer server
+    private byte[] largeContent
+
+    def setup() {
+        largeContent = new byte[(AsyncHttpTransport.BUFFER_SIZE * 3) + 17]
+        new Random(1).nextBytes(largeContent)
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        server.executor = Executors.newCachedThreadPool()
+        server.createContext("/echo") { HttpExchange exchange ->
+            def body = IOUtils.toByteArray(exchange.requestBody)
+            def response = (exchange.requestMethod + " " + exchange.requestHeaders.getFirst("X-Test") + " " +
+                    exchange.requestHeaders.getFirst("Content-Type") + " " + new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8)
+            exchange.responseHeaders.add("X-Multi", "a")
+            exchange.responseHeaders.add("X-Multi", "b")
+            exchange.sendResponseHeaders(201, response.length)
+            exchange.responseBody.write(response)
+            exchange.close()
+        }
+        server.createContext("/large") { HttpExchange exchange ->
+            exchange.sendResponseHeaders(200, largeContent.length)
+            try {
+                exchange.responseBody.write(largeContent)
+            } catch (IOException ignored) {
+                //client closed early
+            }
+            exchange.close()
+        }
+        server.createContext("/redirect") { HttpExchange exchange ->
+            exchange.responseHeaders.add("Location", "http://localhost:" + server.address.port + "/large")
+            exchange.sendResponseHeaders(302, -1)
+            exchange.close()
+        }
+        server.start()
+    }
+
+    def cleanup() {
+        server?.stop(0)
+    }
+
+    @Unroll
+    def "#transportType sends method, headers and body"() {
+        when:
+        def transport = createTransport(transportType)
+        def response = transport.execute("POST", url("/echo"), ["X-Test": "value"], "hello".getBytes(StandardCharsets.UTF_8), "text/plain")
+        def body = IOUtils.toString(response.content, StandardCharsets.UTF_8)
+
+        then:
+        response.code == 201
+        response.getHeader("x-multi") == "a"
+        response.headers["X-MULTI"] == ["a", "b"]
+        body == "POST value text/plain hello"
+
+        cleanup:
+        response?.close()
+        transport?.close()
+
+        where:
+        transportType << GitHubClient.TransportType.values()
+    }
+
+    @Unroll
+    def "#transportType streams large bodies and does not follow redirects"() {
+        when:
+        def transport = createTransport(transportType)
+        def redirect = transport.execute("GET", url("/redirect"), [:], null, null)
+        def response = transport.execute("GET", new URL(redirect.getHeader("Location")), [:], null, null)
+
+        then:
+        redirect.code == 302
+        response.code == 200
+        response.contentLength == largeContent.length
+        Arrays.equals(IOUtils.toByteArray(response.content), largeContent)
+
+        cleanup:
+        redirect?.close()
+        response?.close()
+        transport?.close()
+
+        where:
+        transportType << GitHubClient.TransportType.values()
+    }
+
+    @Unroll
+    def "#transportType can close a response before reading all of it"() {
+        when:
+        def transport = createTransport(transportType)
+        def first = transport.execute("GET", url("/large"), [:], null, null)
+        first.content.read(new byte[10])
+        first.close()
+        def second = transport.execute("GET", url("/large"), [:], null, null)
+
+        then:
+        Arrays.equals(IOUtils.toByteArray(second.content), largeContent)
+
+        cleanup:
+        second?.close()
+        transport?.close()
+
+        where:
+        transportType << GitHubClient.TransportType.values()
+    }
+
+    def "TransportType.parse"() {
+        expect:
+        GitHubClient.TransportType.parse(null) == GitHubClient.TransportType.BLOCKING
+        GitHubClient.TransportType.parse(" async ") == GitHubClient.TransportType.ASYNC
+        GitHubClient.TransportType.parse("Blocking") == GitHubClient.TransportType.BLOCKING
+
+        when:
+        GitHubClient.TransportType.parse("http3")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("[blocking, async]")
+    }
+
+    private URL url(String path) {
+        return new URL("http://localhost:" + server.address.port + path)
+    }
+
+    private static HttpTransport createTransport(GitHubClient.TransportType transportType) {
+        return transportType == GitHubClient.TransportType.ASYNC ? new AsyncHttpTransport(4) : new BlockingHttpTransport(4)
+    }
+}
@@ -0,0 +1,82 @@
+package liquibase.sdk.github
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import liquibase.sdk.util.DigestUtil
+import liquibase.sdk.util.DownloadVerifier
+import org.apache.commons.codec.digest.DigestUtils
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+class SegmentedDownloadTest extends Specification {
+
+    @Unroll
+    def "downloads #size bytes with #maxSegments segments when ranges supported is #supportsRanges using #transportType transport"() {
+        given:
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        def requestedRanges = new CopyOnWriteArrayList<String>()
+        def server = startServer(content, supportsRanges, requestedRanges)
+        def file = File.createTempFile("liquibase-test-", ".bin")
+        def url = new URL("http://localhost:" + server.address.port + "/content")
+
+        when:
+        def transport = transportType == GitHubClient.TransportType.ASYNC ? new AsyncHttpTransport(8) : new BlockingHttpTransport(8)
+        def digests = transport.withCloseable {
+            new SegmentedDownload(transport, url, file, maxSegments, 1000, LoggerFactory.getLogger(getClass())).download(new DownloadVerifier())
+        }
+
+        then:
+        file.bytes == content
+        digests[DigestUtil.Algorithm.SHA256] == DigestUtils.sha256Hex(content)
+        requestedRanges.size() == expectedRequests
+
+        cleanup:
+        server?.stop(0)
+        file?.delete()
+
+        where:
+        size  | maxSegments | supportsRanges | transportType                     | expectedRequests
+        10000 | 4           | true           | GitHubClient.TransportType.BLOCKING | 4
+        10000 | 20          | true           | GitHubClient.TransportType.BLOCKING | 10
+        2001  | 4           | true           | GitHubClient.TransportType.BLOCKING | 3
+        900   | 4           | true           | GitHubClient.TransportType.BLOCKING | 1
+        10000 | 4           | false          | GitHubClient.TransportType.BLOCKING | 1
+        10000 | 4           | true           | GitHubClient.TransportType.ASYNC    | 4
+        10000 | 4           | false          | GitHubClient.TransportType.ASYNC    | 1
+    }
+
+    def "parseContentRange"() {
+        expect:
+        SegmentedDownload.parseContentRange("bytes 0-999/10000") == [0, 999, 10000] as long[]
+        SegmentedDownload.parseContentRange("bytes */10000") == null
+        SegmentedDownload.parseContentRange(null) == null
+    }
+
+    private static HttpServer startServer(byte[] content, boolean supportsRanges, List<String> requestedRanges) {
+        def server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        server.executor = Executors.newCachedThreadPool()
+        server.createContext("/content") { HttpExchange exchange ->
+            def range = exchange.requestHeaders.getFirst("Range")
+            requestedRanges.add(String.valueOf(range))
+            def matcher = range =~ /bytes=(\d+)-(\d+)/
+            if (supportsRanges && matcher.matches()) {
+                int start = matcher.group(1) as int
+                int end = Math.min(matcher.group(2) as int, content.length - 1)
+                exchange.responseHeaders.add("Content-Range", "bytes $start-$end/$content.length")
+                exchange.sendResponseHeaders(206, end - start + 1)
+                exchange.responseBody.write(content, start, end - start + 1)
+            } else {
+                exchange.sendResponseHeaders(200, content.length)
+                exchange.responseBody.write(content)
+            }
+            exchange.close()
+        }
+        server.start()
+        return server
+    }
+}
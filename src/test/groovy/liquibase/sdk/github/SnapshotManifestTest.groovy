@@ -0,0 +1,73 @@
+package liquibase.sdk.github
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class SnapshotManifestTest extends Specification {
+
+    def "recorded entries survive save and load"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def artifactFile = new File(directory, "liquibase-artifacts-master-123.zip")
+        artifactFile.text = "zip"
+
+        def manifest = SnapshotManifest.load(directory)
+        manifest.record("liquibase/liquibase", "local-branch, master", "liquibase:master", 42, "abc123", ["liquibase-artifacts-master": artifactFile])
+        manifest.save()
+
+        def loaded = SnapshotManifest.load(new File(directory, SnapshotManifest.FILE_NAME))
+        def entry = loaded.get("liquibase/liquibase", "local-branch,master")
+
+        then:
+        entry.label == "liquibase:master"
+        entry.runNumber == 42
+        entry.headSha == "abc123"
+        entry.getArtifact("liquibase-artifacts-master") == artifactFile.absoluteFile
+        entry.getArtifact("liquibase-zip-master") == null
+        loaded.get("liquibase/liquibase", "master") == null
+        loaded.get("liquibase/liquibase-pro", "local-branch,master") == null
+
+        cleanup:
+        directory?.deleteDir()
+    }
+
+    def "recording again replaces the previous entry"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def oldFile = new File(directory, "old.zip")
+        oldFile.text = "old"
+        def newFile = new File(directory, "new.zip")
+        newFile.text = "new"
+
+        def manifest = SnapshotManifest.load(directory)
+        manifest.record("liquibase/liquibase", "master", "liquibase:master", 1, "old", ["cli": oldFile, "jars": oldFile])
+        manifest.record("liquibase/liquibase", "master", "liquibase:master", 2, "new", ["jars": newFile])
+        def entry = manifest.get("liquibase/liquibase", "master")
+
+        then:
+        entry.runNumber == 2
+        entry.getArtifact("jars") == newFile.absoluteFile
+        entry.getArtifact("cli") == null
+
+        cleanup:
+        directory?.deleteDir()
+    }
+
+    def "deleted artifacts are not returned"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def artifactFile = new File(directory, "jars.zip")
+        artifactFile.text = "zip"
+
+        def manifest = SnapshotManifest.load(directory)
+        manifest.record("liquibase/liquibase", "master", "liquibase:master", 1, "abc", ["jars": artifactFile])
+        artifactFile.delete()
+
+        then:
+        manifest.get("liquibase/liquibase", "master").getArtifact("jars") == null
+
+        cleanup:
+        directory?.deleteDir()
+    }
+}
@@ -0,0 +1,88 @@
+package liquibase.sdk.maven.plugins
+
+import org.apache.maven.plugin.MojoFailureException
+import org.kohsuke.github.GHArtifact
+import org.kohsuke.github.GHObject
+import org.kohsuke.github.GHWorkflowRun
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Paths
+
+class DownloadSnapshotArtifactsMojoTest extends Specification {
+
+    @Unroll
+    def "getBranchDirectoryName #branchSearch in #repo (includeRepo: #includeRepo)"() {
+        expect:
+        DownloadSnapshotArtifactsMojo.getBranchDirectoryName(repo, branchSearch, includeRepo) == expected
+
+        where:
+        repo                      | branchSearch                 | includeRepo | expected
+        "liquibase/liquibase"     | "master"                     | false       | "master"
+        "liquibase/liquibase"     | "fork-owner:branch,master"   | false       | "fork-owner_branch_master"
+        "liquibase/liquibase"     | "fork-owner:branch, master"  | false       | "fork-owner_branch_master"
+        "liquibase/liquibase"     | "../master"                  | false       | ".._master"
+        "liquibase/liquibase"     | "master"                     | true        | "liquibase_liquibase_master"
+        "liquibase/liquibase-pro" | "fork-owner:branch,master"   | true        | "liquibase_liquibase-pro_fork-owner_branch_master"
+    }
+
+    def "searches resolving to the same artifact id are downloaded once"() {
+        given:
+        def shared = artifact(1, "liquibase-artifacts")
+        def other = artifact(2, "liquibase-test-results")
+        def searches = [
+                search("liquibase/liquibase", "master", shared, other),
+                search("liquibase/liquibase", "fork-owner:master,master", shared),
+        ]
+
+        when:
+        def distinct = new DownloadSnapshotArtifactsMojo().getDistinctArtifacts(searches, Paths.get("download"), true, false)
+
+        then:
+        distinct.keySet() as List == [1L, 2L]
+        distinct[1L].is(shared)
+    }
+
+    def "same-named artifacts of different repos fail without a subdirectory per repo"() {
+        given:
+        def searches = [
+                search("liquibase/liquibase", "master", artifact(1, "liquibase-artifacts")),
+                search("liquibase/liquibase-pro", "master", artifact(2, "liquibase-artifacts")),
+        ]
+        def mojo = new DownloadSnapshotArtifactsMojo()
+
+        when:
+        mojo.getDistinctArtifacts(searches, Paths.get("download"), false, true)
+
+        then:
+        def e = thrown(MojoFailureException)
+        e.message.contains("liquibase-artifacts for master in liquibase/liquibase-pro would overwrite a different artifact")
+
+        when:
+        def distinct = mojo.getDistinctArtifacts(searches, Paths.get("download"), true, true)
+
+        then:
+        distinct.keySet() as List == [1L, 2L]
+    }
+
+    /**
+     * GHArtifact has bridge methods for getId, so it's built with its fields set rather than stubbed
+     */
+    private static GHArtifact artifact(long id, String name) {
+        def artifact = new GHArtifact()
+        def idField = GHObject.getDeclaredField("id")
+        idField.accessible = true
+        idField.set(artifact, id)
+        def nameField = GHArtifact.getDeclaredField("name")
+        nameField.accessible = true
+        nameField.set(artifact, name)
+        return artifact
+    }
+
+    private DownloadSnapshotArtifactsMojo.ResolvedSearch search(String repo, String branchSearch, GHArtifact... artifacts) {
+        def search = new DownloadSnapshotArtifactsMojo.ResolvedSearch(repo, branchSearch)
+        search.run = Stub(GHWorkflowRun)
+        search.artifacts.addAll(artifacts)
+        return search
+    }
+}
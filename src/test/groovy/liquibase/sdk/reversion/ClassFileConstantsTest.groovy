@@ -0,0 +1,93 @@
+package liquibase.sdk.reversion
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ClassFileConstantsTest extends Specification {
+
+    def "scan reports only snapshot versions in string constants"() {
+        when:
+        def constants = ClassFileConstants.parse(createClass("version 0-SNAPSHOT"))
+
+        then:
+        constants.utf8Constants*.value == ["Example", "version 0-SNAPSHOT", "java/lang/Object"]
+        constants.utf8Constants*.index == [1, 5, 7]
+        constants.scan(new SnapshotScanner(), "Example.class")*.toString() == ["Example.class constant #5 contains 0-SNAPSHOT at offset 8"]
+    }
+
+    def "rewrite replaces string constants and keeps the rest of the class"() {
+        when:
+        def original = createClass("version 0-SNAPSHOT")
+        def rewritten = ClassFileConstants.parse(original).rewrite(new TokenRewriter(TokenRewriter.Rule.replaceToken("0-SNAPSHOT", "4.5.6", '.' as char)))
+
+        then:
+        rewritten == createClass("version 4.5.6")
+        loadClass(rewritten).name == "Example"
+    }
+
+    @Unroll
+    def "rewrite with replaceTokenInValue replaces '#constant'"() {
+        when:
+        def rewriter = new TokenRewriter(TokenRewriter.Rule.replaceTokenInValue("0-SNAPSHOT", "4.5.6", '.' as char))
+
+        then:
+        ClassFileConstants.parse(createClass(constant)).rewrite(rewriter) == createClass(expected)
+
+        where:
+        constant             | expected
+        "0-SNAPSHOT"         | "4.5.6"
+        "0-SNAPSHOT build"   | "4.5.6 build"
+        "version 0-SNAPSHOT" | "version 4.5.6"
+        "1.0-SNAPSHOT"       | "1.0-SNAPSHOT"
+    }
+
+    def "rewrite returns the original content if nothing changes"() {
+        when:
+        def original = createClass("version 4.5.6")
+
+        then:
+        ClassFileConstants.parse(original).rewrite(new TokenRewriter(TokenRewriter.Rule.replaceToken("0-SNAPSHOT", "4.5.6", '.' as char))).is(original)
+    }
+
+    def "parse rejects content that is not a class file"() {
+        when:
+        ClassFileConstants.parse("CAFEBABE but not really".bytes)
+
+        then:
+        thrown(IOException)
+    }
+
+    /**
+     * Creates a minimal class file with a long constant, so the two-slot indexing is covered, and the given string constant.
+     */
+    static byte[] createClass(String stringConstant) {
+        def bytes = new ByteArrayOutputStream()
+        def out = new DataOutputStream(bytes)
+        out.writeInt(0xCAFEBABE as int)
+        out.writeShort(0)
+        out.writeShort(52)
+        out.writeShort(9)
+        out.writeByte(1); out.writeUTF("Example")          //#1
+        out.writeByte(7); out.writeShort(1)                //#2
+        out.writeByte(5); out.writeLong(5L)                //#3 and #4
+        out.writeByte(1); out.writeUTF(stringConstant)     //#5
+        out.writeByte(8); out.writeShort(5)                //#6
+        out.writeByte(1); out.writeUTF("java/lang/Object") //#7
+        out.writeByte(7); out.writeShort(7)                //#8
+        out.writeShort(0x21)
+        out.writeShort(2)
+        out.writeShort(8)
+        out.writeShort(0)
+        out.writeShort(0)
+        out.writeShort(0)
+        out.writeShort(0)
+        out.flush()
+        return bytes.toByteArray()
+    }
+
+    private static Class<?> loadClass(byte[] content) {
+        def directory = File.createTempDir()
+        new File(directory, "Example.class").bytes = content
+        return new URLClassLoader([directory.toURI().toURL()] as URL[], (ClassLoader) null).loadClass("Example")
+    }
+}
@@ -0,0 +1,288 @@
+package liquibase.sdk.reversion
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipFile
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
+import org.apache.commons.io.IOUtils
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class JarReversionerTest extends Specification {
+
+    def reversion() {
+        when:
+        def inputFile = createJar([
+                "META-INF/MANIFEST.MF"                                       : "Manifest-Version: 1.0\nLiquibase-Version: 0-SNAPSHOT\nBundle-Version: 0.0.0.SNAPSHOT\n\n",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.xml"        : "<project><version>0-SNAPSHOT</version></project>",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.properties" : "version=0-SNAPSHOT\n",
+                "liquibase/Example.class"                                     : "CAFEBABE example class content " * 100,
+                "liquibase.build.properties"                                  : "build.version=DEV\nbuild.commit=abc\n",
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".jar")
+
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+        def output = readJar(outputFile)
+
+        then:
+        output.keySet() as List == [
+                "META-INF/MANIFEST.MF",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.xml",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.properties",
+                "liquibase/Example.class",
+                "liquibase.build.properties",
+        ]
+        output["META-INF/MANIFEST.MF"].contains("Liquibase-Version: 4.5.6")
+        output["META-INF/MANIFEST.MF"].contains("Bundle-Version: 4.5.6")
+        output["META-INF/maven/org.liquibase/liquibase-core/pom.xml"] == "<project><version>4.5.6</version></project>"
+        output["META-INF/maven/org.liquibase/liquibase-core/pom.properties"] == "version=4.5.6\n"
+        output["liquibase/Example.class"] == "CAFEBABE example class content " * 100
+        output["liquibase.build.properties"] == "build.version=4.5.6\nbuild.commit=abc\n"
+
+        new String(result.pom, StandardCharsets.UTF_8) == "<project><version>4.5.6</version></project>"
+        result.rewrittenEntries == 4
+
+        entryTimes(outputFile) == entryTimes(inputFile)
+
+        cleanup:
+        inputFile?.delete()
+        outputFile?.delete()
+    }
+
+    def "unchanged entries keep their compressed bytes"() {
+        when:
+        def inputFile = createJar([
+                "META-INF/MANIFEST.MF"   : "Manifest-Version: 1.0\n\n",
+                "liquibase/Example.class": "example class content " * 100,
+                "liquibase/example.xml"  : "<xml>1.0.0-SNAPSHOT is not replaced</xml>",
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".jar")
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+
+        then:
+        rawContent(outputFile, "liquibase/Example.class") == rawContent(inputFile, "liquibase/Example.class")
+        rawContent(outputFile, "liquibase/example.xml") == rawContent(inputFile, "liquibase/example.xml")
+        result.rewrittenEntries == 1
+
+        cleanup:
+        inputFile?.delete()
+        outputFile?.delete()
+    }
+
+    def "reports every remaining snapshot version"() {
+        when:
+        def inputFile = createJar([
+                "META-INF/MANIFEST.MF": "Manifest-Version: 1.0\n\n",
+                "liquibase/data.txt"  : "version 0-SNAPSHOT",
+                "liquibase/other.txt" : "0.0.0.SNAPSHOT and 0-SNAPSHOT",
+                "liquibase/clean.txt" : "nothing to see",
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".jar")
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+
+        then:
+        result.snapshotFindings*.toString() == [
+                inputFile.name + "!/liquibase/data.txt contains 0-SNAPSHOT at offset 8",
+                inputFile.name + "!/liquibase/other.txt contains 0.0.0.SNAPSHOT at offset 0",
+                inputFile.name + "!/liquibase/other.txt contains 0-SNAPSHOT at offset 19",
+        ]
+        result.createdFiles == [outputFile]
+
+        cleanup:
+        inputFile?.delete()
+        outputFile?.delete()
+    }
+
+    def "class file constants are reported and optionally rewritten"() {
+        when:
+        def inputFile = createJar([
+                "META-INF/MANIFEST.MF"   : "Manifest-Version: 1.0\n\n",
+        ], [
+                "liquibase/Version.class": ClassFileConstantsTest.createClass("version 0-SNAPSHOT"),
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".jar")
+        def reversioner = new JarReversioner("4.5.6")
+        def scanned = reversioner.reversion(inputFile, outputFile)
+
+        reversioner.setRewriteClassConstants(true)
+        def rewritten = reversioner.reversion(inputFile, outputFile)
+
+        then:
+        scanned.snapshotFindings*.toString() == [inputFile.name + "!/liquibase/Version.class constant #5 contains 0-SNAPSHOT at offset 8"]
+        rewritten.snapshotFindings.isEmpty()
+        rewritten.rewrittenEntries == 2
+        new ZipFile(outputFile).withCloseable { it.getInputStream(it.getEntry("liquibase/Version.class")).bytes } == ClassFileConstantsTest.createClass("version 4.5.6")
+
+        cleanup:
+        inputFile?.delete()
+        outputFile?.delete()
+    }
+
+    def "class file constants holding only the snapshot version are rewritten"() {
+        when:
+        def inputFile = createJar([
+                "META-INF/MANIFEST.MF"   : "Manifest-Version: 1.0\n\n",
+        ], [
+                "liquibase/Version.class": ClassFileConstantsTest.createClass("0-SNAPSHOT"),
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".jar")
+        def reversioner = new JarReversioner("4.5.6")
+        reversioner.setRewriteClassConstants(true)
+        def result = reversioner.reversion(inputFile, outputFile)
+
+        then:
+        result.snapshotFindings.isEmpty()
+        new ZipFile(outputFile).withCloseable { it.getInputStream(it.getEntry("liquibase/Version.class")).bytes } == ClassFileConstantsTest.createClass("4.5.6")
+
+        cleanup:
+        inputFile?.delete()
+        outputFile?.delete()
+    }
+
+    def "re-versions liquibase jars nested in a zip distribution"() {
+        when:
+        def coreJar = createJar([
+                "META-INF/MANIFEST.MF"                               : "Manifest-Version: 1.0\nLiquibase-Version: 0-SNAPSHOT\n\n",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.xml": "<project><version>0-SNAPSHOT</version></project>",
+                "liquibase/data.txt"                                 : "still 0-SNAPSHOT",
+        ])
+        def otherJar = createJar(["other/data.txt": "1.0-SNAPSHOT is not ours"])
+        def inputFile = createJar(["liquibase": "#!/bin/sh", "examples/pom.xml": "<project><version>0-SNAPSHOT</version></project>"], [
+                "internal/lib/liquibase-core.jar": coreJar.bytes,
+                "internal/lib/other.jar"         : otherJar.bytes,
+        ])
+        def outputFile = File.createTempFile("liquibase-test-", ".zip")
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+
+        def nestedCore = File.createTempFile("liquibase-test-", ".jar")
+        new ZipFile(outputFile).withCloseable { nestedCore.bytes = it.getInputStream(it.getEntry("internal/lib/liquibase-core.jar")).bytes }
+        def nestedOutput = readJar(nestedCore)
+
+        then:
+        nestedOutput["META-INF/MANIFEST.MF"].contains("Liquibase-Version: 4.5.6")
+        nestedOutput["META-INF/maven/org.liquibase/liquibase-core/pom.xml"] == "<project><version>4.5.6</version></project>"
+        rawContent(outputFile, "internal/lib/other.jar") == rawContent(inputFile, "internal/lib/other.jar")
+        result.pom == null
+        result.snapshotFindings*.toString() == [inputFile.name + "!/internal/lib/liquibase-core.jar!/liquibase/data.txt contains 0-SNAPSHOT at offset 6"]
+
+        cleanup:
+        [coreJar, otherJar, inputFile, outputFile, nestedCore]*.delete()
+    }
+
+    def "does not extract a pom from a zip distribution"() {
+        when:
+        def jar = createJar([
+                "META-INF/maven/org.liquibase/liquibase-dist/pom.xml": "<project><version>0-SNAPSHOT</version></project>",
+                "pom.xml"                                            : "<project><version>0-SNAPSHOT</version></project>",
+        ])
+        def inputFile = new File(jar.absolutePath.replace(".jar", ".zip"))
+        jar.renameTo(inputFile)
+        def outputFile = File.createTempFile("liquibase-test-", ".zip")
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+
+        then:
+        result.pom == null
+        result.createdFiles == [outputFile]
+        readJar(outputFile)["pom.xml"] == "<project><version>4.5.6</version></project>"
+
+        cleanup:
+        [jar, inputFile, outputFile]*.delete()
+    }
+
+    def "re-versions liquibase jars nested in a tar.gz distribution"() {
+        when:
+        def coreJar = createJar([
+                "META-INF/MANIFEST.MF"                               : "Manifest-Version: 1.0\nLiquibase-Version: 0-SNAPSHOT\n\n",
+                "META-INF/maven/org.liquibase/liquibase-core/pom.xml": "<project><version>0-SNAPSHOT</version></project>",
+        ])
+        def inputFile = File.createTempFile("liquibase-test-", "-0-SNAPSHOT.tar.gz")
+        new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(inputFile))).withCloseable { out ->
+            [
+                    "liquibase"                      : "#!/bin/sh".bytes,
+                    "internal/lib/liquibase-core.jar": coreJar.bytes,
+                    "examples/changelog.xml"         : "<changelog version=\"0-SNAPSHOT\"/>".bytes,
+                    "examples/pom.xml"               : "<project><version>0-SNAPSHOT</version></project>".bytes,
+            ].each { name, content ->
+                def entry = new TarArchiveEntry(name)
+                entry.size = content.length
+                out.putArchiveEntry(entry)
+                out.write(content)
+                out.closeArchiveEntry()
+            }
+        }
+        def outputFile = File.createTempFile("liquibase-test-", ".tar.gz")
+        def result = new JarReversioner("4.5.6").reversion(inputFile, outputFile)
+
+        Map<String, byte[]> output = [:]
+        new TarArchiveInputStream(new GzipCompressorInputStream(new FileInputStream(outputFile))).withCloseable { input ->
+            def entry
+            while ((entry = input.nextTarEntry) != null) {
+                output[entry.name] = IOUtils.toByteArray(input)
+            }
+        }
+        def nestedCore = File.createTempFile("liquibase-test-", ".jar")
+        nestedCore.bytes = output["internal/lib/liquibase-core.jar"]
+
+        then:
+        output.keySet() as List == ["liquibase", "internal/lib/liquibase-core.jar", "examples/changelog.xml", "examples/pom.xml"]
+        new String(output["liquibase"], StandardCharsets.UTF_8) == "#!/bin/sh"
+        new String(output["examples/changelog.xml"], StandardCharsets.UTF_8) == "<changelog version=\"4.5.6\"/>"
+        readJar(nestedCore)["META-INF/MANIFEST.MF"].contains("Liquibase-Version: 4.5.6")
+        readJar(nestedCore)["META-INF/maven/org.liquibase/liquibase-core/pom.xml"] == "<project><version>4.5.6</version></project>"
+        new String(output["examples/pom.xml"], StandardCharsets.UTF_8) == "<project><version>4.5.6</version></project>"
+        result.pom == null
+        result.snapshotFindings.isEmpty()
+        result.rewrittenEntries == 5
+
+        cleanup:
+        [coreJar, inputFile, outputFile, nestedCore]*.delete()
+    }
+
+    private static File createJar(Map<String, String> entries, Map<String, byte[]> binaryEntries = [:]) {
+        def file = File.createTempFile("liquibase-test-", "-0-SNAPSHOT.jar")
+        def time = 946684800000L
+        new ZipOutputStream(new FileOutputStream(file)).withCloseable { out ->
+            entries.each { name, content ->
+                def entry = new ZipEntry(name)
+                entry.setTime(time)
+                time += 60000
+                out.putNextEntry(entry)
+                out.write(content.getBytes(StandardCharsets.UTF_8))
+                out.closeEntry()
+            }
+            binaryEntries.each { name, content ->
+                out.putNextEntry(new ZipEntry(name))
+                out.write(content)
+                out.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private static Map<String, String> readJar(File file) {
+        Map<String, String> returnMap = new LinkedHashMap<>()
+        new ZipFile(file).withCloseable { zipFile ->
+            for (def entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                returnMap[entry.name] = zipFile.getInputStream(entry).getText("UTF-8")
+            }
+        }
+        return returnMap
+    }
+
+    private static List<Long> entryTimes(File file) {
+        new ZipFile(file).withCloseable { zipFile ->
+            return Collections.list(zipFile.getEntriesInPhysicalOrder()).collect { it.time }
+        }
+    }
+
+    private static byte[] rawContent(File file, String entryName) {
+        new ZipFile(file).withCloseable { zipFile ->
+            return zipFile.getRawInputStream(zipFile.getEntry(entryName)).bytes
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package liquibase.sdk.reversion
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class ReleaseBuildStateTest extends Specification {
+
+    def "state survives a reload for the same version"() {
+        when:
+        def outputDirectory = Files.createTempDirectory("liquibase-test-").toFile()
+        def jar = new File(outputDirectory, "liquibase-core-4.5.6.jar")
+        jar.text = "jar"
+        new File(jar.absolutePath + ".asc").text = "signature"
+        new File(jar.absolutePath + ".md5").text = "md5"
+
+        def state = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        state.recordInput("liquibase-core-0-SNAPSHOT.jar", "input-digest", [(jar): "jar-digest"])
+        state.recordSigned(jar)
+        state.save()
+
+        def reloaded = ReleaseBuildState.load(outputDirectory, "4.5.6")
+
+        then:
+        reloaded.getOutputs("liquibase-core-0-SNAPSHOT.jar", "input-digest") == [jar]
+        reloaded.getOutputs("liquibase-core-0-SNAPSHOT.jar", "changed-digest") == null
+        reloaded.isOutputValid(jar, "jar-digest")
+        !reloaded.isOutputValid(jar, "other-digest")
+        reloaded.isSigned(jar, ["md5"])
+        !reloaded.isSigned(jar, ["md5", "sha1"])
+
+        cleanup:
+        outputDirectory?.deleteDir()
+    }
+
+    def "state is discarded for a different version"() {
+        when:
+        def outputDirectory = Files.createTempDirectory("liquibase-test-").toFile()
+        def state = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        state.recordInput("liquibase-core-0-SNAPSHOT.jar", "input-digest", [(new File(outputDirectory, "liquibase-core-4.5.6.jar")): "jar-digest"])
+        state.save()
+
+        then:
+        ReleaseBuildState.load(outputDirectory, "4.5.7").getOutputs("liquibase-core-0-SNAPSHOT.jar", "input-digest") == null
+
+        cleanup:
+        outputDirectory?.deleteDir()
+    }
+
+    def "re-recording an input clears its signed state"() {
+        when:
+        def outputDirectory = Files.createTempDirectory("liquibase-test-").toFile()
+        def jar = new File(outputDirectory, "liquibase-core-4.5.6.jar")
+        jar.text = "jar"
+        new File(jar.absolutePath + ".asc").text = "signature"
+
+        def state = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        state.recordInput("liquibase-core-0-SNAPSHOT.jar", "input-digest", [(jar): "jar-digest"])
+        state.recordSigned(jar)
+        state.recordInput("liquibase-core-0-SNAPSHOT.jar", "new-input-digest", [(jar): "new-jar-digest"])
+
+        then:
+        !state.isSigned(jar, [])
+
+        cleanup:
+        outputDirectory?.deleteDir()
+    }
+
+    def "bundled outputs count as present while the bundle is unchanged"() {
+        when:
+        def outputDirectory = Files.createTempDirectory("liquibase-test-").toFile()
+        def sourcesJar = new File(outputDirectory, "liquibase-core-4.5.6-sources.jar")
+        def zip = new File(outputDirectory, "liquibase-additional-4.5.6.zip")
+
+        def state = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        state.recordInput("liquibase-core-0-SNAPSHOT-sources.jar", "input-digest", [(sourcesJar): "jar-digest"])
+        state.recordSigned(sourcesJar)
+        state.recordBundle(zip, "zip-digest", [sourcesJar.name, sourcesJar.name + ".asc", sourcesJar.name + ".md5"])
+        state.save()
+
+        def reloaded = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        def bundledBeforeVerify = reloaded.isBundled(sourcesJar)
+        def changedZipVerified = reloaded.verifyBundle(zip, "changed-digest")
+        def bundledWithChangedZip = reloaded.isBundled(sourcesJar)
+        def missingZipVerified = reloaded.verifyBundle(zip, null)
+
+        then:
+        !bundledBeforeVerify
+        !changedZipVerified
+        !bundledWithChangedZip
+        !missingZipVerified
+        reloaded.verifyBundle(zip, "zip-digest")
+        reloaded.isBundled(sourcesJar)
+        !reloaded.isBundled(new File(outputDirectory, "liquibase-core-4.5.6.jar"))
+        reloaded.isSigned(sourcesJar, ["md5"])
+        !reloaded.isSigned(sourcesJar, ["md5", "sha1"])
+
+        cleanup:
+        outputDirectory?.deleteDir()
+    }
+
+    def "re-recording a bundle replaces its bundled files"() {
+        when:
+        def outputDirectory = Files.createTempDirectory("liquibase-test-").toFile()
+        def zip = new File(outputDirectory, "liquibase-additional-4.5.6.zip")
+
+        def state = ReleaseBuildState.load(outputDirectory, "4.5.6")
+        state.recordBundle(zip, "zip-digest", ["a.pom", "b.pom"])
+        state.recordBundle(zip, "new-zip-digest", ["b.pom"])
+
+        then:
+        !state.isBundled(new File(outputDirectory, "a.pom"))
+        state.isBundled(new File(outputDirectory, "b.pom"))
+        !state.verifyBundle(zip, "zip-digest")
+        state.verifyBundle(zip, "new-zip-digest")
+
+        cleanup:
+        outputDirectory?.deleteDir()
+    }
+}
@@ -0,0 +1,39 @@
+package liquibase.sdk.reversion
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class SnapshotScannerTest extends Specification {
+
+    @Unroll
+    def "scan '#content'"() {
+        when:
+        def scanner = new SnapshotScanner(["0-SNAPSHOT", "0.0.0.SNAPSHOT", "SNAP"])
+        def bytes = content.getBytes(StandardCharsets.UTF_8)
+
+        then:
+        scanner.scan("test", bytes).collect { it.marker + "@" + it.offset } == expected
+        scanner.scan("test", new ByteArrayInputStream(bytes)).collect { it.marker + "@" + it.offset } == expected
+
+        where:
+        content                     | expected
+        "clean content"             | []
+        "1.0-SNAPSHOT"              | ["SNAP@4", "0-SNAPSHOT@2"]
+        "0.0.0.SNAPSHOT"            | ["SNAP@6", "0.0.0.SNAPSHOT@0"]
+        "00-SNAPSHOT"               | ["SNAP@3", "0-SNAPSHOT@1"]
+        "a 0-SNAPSHOT b 0-SNAPSHOT" | ["SNAP@4", "0-SNAPSHOT@2", "SNAP@17", "0-SNAPSHOT@15"]
+    }
+
+    def "scan finds markers that span read buffers"() {
+        when:
+        def content = new byte[40000]
+        Arrays.fill(content, (byte) 'x')
+        def marker = "0-SNAPSHOT".getBytes(StandardCharsets.UTF_8)
+        System.arraycopy(marker, 0, content, 16 * 1024 - 4, marker.length)
+
+        then:
+        new SnapshotScanner().scan("test", new ByteArrayInputStream(content))*.offset == [16 * 1024 - 4]
+    }
+}
@@ -0,0 +1,80 @@
+package liquibase.sdk.reversion
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class TokenRewriterTest extends Specification {
+
+    @Unroll
+    def "replaceToken '#content'"() {
+        when:
+        def rewriter = new TokenRewriter(TokenRewriter.Rule.replaceToken("0-SNAPSHOT", "4.5.6", '.' as char))
+
+        then:
+        rewrite(rewriter, content) == expected
+        rewrite(rewriter, content) == content.replaceAll("([^.])0-SNAPSHOT", "\$1" + "4.5.6")
+        rewriter.matches(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) == (expected != content)
+
+        where:
+        content                                        | expected
+        "no match"                                     | "no match"
+        "<version>0-SNAPSHOT</version>"                | "<version>4.5.6</version>"
+        "version=0-SNAPSHOT\n"                         | "version=4.5.6\n"
+        "1.0.0-SNAPSHOT and 0.0-SNAPSHOT"              | "1.0.0-SNAPSHOT and 0.0-SNAPSHOT"
+        "0-SNAPSHOT at start"                          | "0-SNAPSHOT at start"
+        "a 0-SNAPSHOT, b 0-SNAPSHOT"                   | "a 4.5.6, b 4.5.6"
+        "partial 0-SNAP"                               | "partial 0-SNAP"
+        "ünïcödé 0-SNAPSHOT"                           | "ünïcödé 4.5.6"
+    }
+
+    @Unroll
+    def "replaceTokenInValue '#content'"() {
+        when:
+        def rewriter = new TokenRewriter(TokenRewriter.Rule.replaceTokenInValue("0-SNAPSHOT", "4.5.6", '.' as char))
+
+        then:
+        rewrite(rewriter, content) == expected
+        rewrite(rewriter, content) == content.replaceAll("(^|[^.])0-SNAPSHOT", "\$1" + "4.5.6")
+
+        where:
+        content                   | expected
+        "0-SNAPSHOT"              | "4.5.6"
+        "0-SNAPSHOT at start"     | "4.5.6 at start"
+        "1.0-SNAPSHOT"            | "1.0-SNAPSHOT"
+        "a 0-SNAPSHOT"            | "a 4.5.6"
+    }
+
+    @Unroll
+    def "replaceLineValue '#content'"() {
+        when:
+        def rewriter = new TokenRewriter(TokenRewriter.Rule.replaceLineValue("build.version=", "4.5.6"))
+
+        then:
+        rewrite(rewriter, content) == expected
+
+        where:
+        content                                          | expected
+        "build.version=DEV\nbuild.commit=abc\n"          | "build.version=4.5.6\nbuild.commit=abc\n"
+        "build.commit=abc\r\nbuild.version=DEV\r\n"      | "build.commit=abc\r\nbuild.version=4.5.6\r\n"
+        "build.version="                                 | "build.version=4.5.6"
+        "build.version=old value at the end"             | "build.version=4.5.6"
+        "other=1"                                        | "other=1"
+    }
+
+    def "rewrite handles tokens spanning read buffers"() {
+        when:
+        def rewriter = new TokenRewriter(TokenRewriter.Rule.replaceToken("0-SNAPSHOT", "4.5.6", '.' as char))
+        def content = ("x" * (16 * 1024 - 5)) + " 0-SNAPSHOT " + ("y" * 40000) + " 0-SNAPSHOT"
+
+        then:
+        rewrite(rewriter, content) == content.replace("0-SNAPSHOT", "4.5.6")
+    }
+
+    private static String rewrite(TokenRewriter rewriter, String content) {
+        def out = new ByteArrayOutputStream()
+        rewriter.rewrite(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), out)
+        return new String(out.toByteArray(), StandardCharsets.UTF_8)
+    }
+}
@@ -4,6 +4,8 @@ package liquibase.sdk.util
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.file.Files
+
 class ArchiveUtilTest extends Specification {
 
     @Unroll
@@ -20,4 +22,25 @@ class ArchiveUtilTest extends Specification {
         "liquibase.zip"      | "*"                     | true
         "weird+file.zip"     | "weird+file.zip"        | true
     }
+
+    def "linkOrCopy links every file of a directory"() {
+        when:
+        def source = Files.createTempDirectory("liquibase-test-")
+        Files.createDirectories(source.resolve("lib"))
+        source.resolve("liquibase.jar").text = "jar"
+        source.resolve("lib/driver.jar").text = "driver"
+        def target = Files.createTempDirectory("liquibase-test-").resolve("branch")
+
+        ArchiveUtil.linkOrCopy(source, target)
+        ArchiveUtil.linkOrCopy(source, target)
+
+        then:
+        target.resolve("liquibase.jar").text == "jar"
+        target.resolve("lib/driver.jar").text == "driver"
+        Files.isSameFile(source.resolve("liquibase.jar"), target.resolve("liquibase.jar"))
+
+        cleanup:
+        source?.toFile()?.deleteDir()
+        target?.parent?.toFile()?.deleteDir()
+    }
 }
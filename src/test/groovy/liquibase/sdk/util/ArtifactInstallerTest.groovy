@@ -0,0 +1,58 @@
+package liquibase.sdk.util
+
+import org.eclipse.aether.RepositorySystem
+import org.eclipse.aether.RepositorySystemSession
+import org.eclipse.aether.installation.InstallRequest
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ArtifactInstallerTest extends Specification {
+
+    def "installs all jars and their poms in one request"() {
+        given:
+        def repositorySystem = Mock(RepositorySystem)
+        def session = Mock(RepositorySystemSession)
+        def installer = new ArtifactInstaller(repositorySystem, session)
+        InstallRequest request = null
+
+        when:
+        def added = [
+                installer.addJar("liquibase-core-0-SNAPSHOT.jar", new ByteArrayInputStream(createJar("liquibase-core"))),
+                installer.addJar("liquibase-core-0-SNAPSHOT-tests.jar", new ByteArrayInputStream(createJar("liquibase-core"))),
+                installer.addJar("other.jar", new ByteArrayInputStream(createJar(null))),
+        ]
+        installer.install()
+
+        then:
+        added == [true, true, false]
+        1 * repositorySystem.install(session, _) >> { request = it[1]; null }
+        request.artifacts*.toString() == [
+                "org.liquibase:liquibase-core:jar:0-SNAPSHOT",
+                "org.liquibase:liquibase-core:pom:0-SNAPSHOT",
+                "org.liquibase:liquibase-core:jar:tests:0-SNAPSHOT",
+        ]
+        request.artifacts.every { it.file.exists() }
+        new String(request.artifacts[1].file.bytes, StandardCharsets.UTF_8) == "<project/>"
+
+        cleanup:
+        installer?.close()
+    }
+
+    private static byte[] createJar(String artifactId) {
+        def bytes = new ByteArrayOutputStream()
+        new ZipOutputStream(bytes).withCloseable { out ->
+            if (artifactId != null) {
+                out.putNextEntry(new ZipEntry("META-INF/maven/org.liquibase/" + artifactId + "/pom.properties"))
+                out.write("groupId=org.liquibase\nartifactId=${artifactId}\nversion=0-SNAPSHOT\n".getBytes(StandardCharsets.UTF_8))
+                out.putNextEntry(new ZipEntry("META-INF/maven/org.liquibase/" + artifactId + "/pom.xml"))
+                out.write("<project/>".getBytes(StandardCharsets.UTF_8))
+            }
+            out.putNextEntry(new ZipEntry("data.txt"))
+            out.write("data".getBytes(StandardCharsets.UTF_8))
+        }
+        return bytes.toByteArray()
+    }
+}
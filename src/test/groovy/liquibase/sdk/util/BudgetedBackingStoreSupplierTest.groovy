@@ -0,0 +1,82 @@
+package liquibase.sdk.util
+
+import spock.lang.Specification
+
+class BudgetedBackingStoreSupplierTest extends Specification {
+
+    def "content within the budget stays in memory"() {
+        when:
+        def supplier = new BudgetedBackingStoreSupplier(100, null)
+        def store = supplier.get()
+        store.writeOut("hello ".bytes, 0, 6)
+        store.writeOut("world".bytes, 0, 5)
+        store.closeForWriting()
+
+        then:
+        store.getInputStream().text == "hello world"
+        //the buffer doubled from 6 to 12 bytes for the second write
+        supplier.usedBytes == 12
+        supplier.spilledBytes == 0
+
+        when:
+        store.close()
+
+        then:
+        supplier.usedBytes == 0
+    }
+
+    def "content above the budget spills to disk"() {
+        when:
+        def supplier = new BudgetedBackingStoreSupplier(8, null)
+        def first = supplier.get()
+        def second = supplier.get()
+        first.writeOut("12345".bytes, 0, 5)
+        second.writeOut("abcde".bytes, 0, 5)
+        first.writeOut("67890".bytes, 0, 5)
+        first.closeForWriting()
+        second.closeForWriting()
+
+        then:
+        first.getInputStream().text == "1234567890"
+        second.getInputStream().text == "abcde"
+        supplier.usedBytes == 5
+        supplier.spilledBytes == 10
+
+        cleanup:
+        first?.close()
+        second?.close()
+    }
+
+    def "buffer growth is counted against the budget"() {
+        when:
+        def supplier = new BudgetedBackingStoreSupplier(10, null)
+        def store = supplier.get()
+        store.writeOut("1234".bytes, 0, 4)
+        store.writeOut("5678".bytes, 0, 4)
+
+        then: "doubling fits in the budget"
+        supplier.usedBytes == 8
+
+        when:
+        store.writeOut("90".bytes, 0, 2)
+
+        then: "doubling to 16 bytes does not fit, so the buffer only grows to what is needed"
+        supplier.usedBytes == 10
+        supplier.spilledBytes == 0
+
+        when:
+        store.writeOut("a".bytes, 0, 1)
+        store.closeForWriting()
+
+        then:
+        supplier.usedBytes == 10
+        supplier.spilledBytes == 1
+        store.getInputStream().text == "1234567890a"
+
+        when:
+        store.close()
+
+        then:
+        supplier.usedBytes == 0
+    }
+}
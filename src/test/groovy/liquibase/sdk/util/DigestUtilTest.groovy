@@ -0,0 +1,47 @@
+package liquibase.sdk.util
+
+import org.apache.commons.codec.digest.DigestUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DigestUtilTest extends Specification {
+
+    def "digest computes all algorithms in one read"() {
+        when:
+        def file = File.createTempFile("liquibase-test-", ".bin")
+        def content = new byte[3 * 1024 * 1024 + 17]
+        new Random(42).nextBytes(content)
+        file.bytes = content
+
+        def digests = DigestUtil.digest(file, EnumSet.allOf(DigestUtil.Algorithm))
+
+        then:
+        digests[DigestUtil.Algorithm.MD5] == DigestUtils.md5Hex(content)
+        digests[DigestUtil.Algorithm.SHA1] == DigestUtils.sha1Hex(content)
+        digests[DigestUtil.Algorithm.SHA256] == DigestUtils.sha256Hex(content)
+        digests[DigestUtil.Algorithm.SHA512] == DigestUtils.sha512Hex(content)
+
+        cleanup:
+        file?.delete()
+    }
+
+    @Unroll
+    def "parseList #input"() {
+        expect:
+        DigestUtil.Algorithm.parseList(input) as List == expected
+
+        where:
+        input                   | expected
+        "md5,sha1"              | [DigestUtil.Algorithm.MD5, DigestUtil.Algorithm.SHA1]
+        "sha512, SHA-256"       | [DigestUtil.Algorithm.SHA256, DigestUtil.Algorithm.SHA512]
+        ""                      | []
+    }
+
+    def "parseList rejects unknown algorithms"() {
+        when:
+        DigestUtil.Algorithm.parseList("md5,crc32")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,86 @@
+package liquibase.sdk.util
+
+import org.apache.commons.codec.digest.DigestUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class DownloadVerifierTest extends Specification {
+
+    def "valid zip is copied unchanged and digested"() {
+        when:
+        def zip = createZip()
+        def verifier = new DownloadVerifier()
+        verifier.setValidateZip(true)
+        verifier.setExpectedLength(zip.length)
+        verifier.addExpectedDigest(DigestUtil.Algorithm.SHA1, DigestUtils.sha1Hex(zip).toUpperCase())
+        def out = new ByteArrayOutputStream()
+        def digests = verifier.copy(new ByteArrayInputStream(zip), out, zip.length)
+
+        then:
+        out.toByteArray() == zip
+        digests == [
+                (DigestUtil.Algorithm.SHA1)  : DigestUtils.sha1Hex(zip),
+                (DigestUtil.Algorithm.SHA256): DigestUtils.sha256Hex(zip),
+        ]
+    }
+
+    @Unroll
+    def "corrupt content is rejected: #description"() {
+        when:
+        def verifier = new DownloadVerifier()
+        verifier.setValidateZip(true)
+        setup.call(verifier)
+        verifier.copy(new ByteArrayInputStream(content), new ByteArrayOutputStream(), contentLength)
+
+        then:
+        def e = thrown(DownloadVerifier.CorruptDownloadException)
+        e.message.contains(message)
+
+        where:
+        description         | content                                               | contentLength | setup                                                                                  | message
+        "entry CRC"         | corrupt(createZip())                                  | -1            | { }                                                                                    | "CRC"
+        "truncated zip"     | Arrays.copyOf(createZip(), 60)                        | -1            | { }                                                                                    | "EOF"
+        "not a zip"         | "<html>Not found</html>".bytes                        | -1            | { }                                                                                    | "not a zip"
+        "server length"     | createZip()                                           | 5             | { }                                                                                    | "server sent a length of 5"
+        "expected length"   | createZip()                                           | -1            | { it.setExpectedLength(5) }                                                            | "expected 5"
+        "expected checksum" | createZip()                                           | -1            | { it.addExpectedDigest(DigestUtil.Algorithm.SHA256, "abc") }                           | "does not match the expected abc"
+    }
+
+    def "parseChecksumFile"() {
+        expect:
+        DownloadVerifier.parseChecksumFile("ABC123  liquibase-4.5.6.zip\n") == "abc123"
+        DownloadVerifier.parseChecksumFile("abc123") == "abc123"
+        DownloadVerifier.parseChecksumFile("  \n") == null
+    }
+
+    private static byte[] createZip() {
+        def content = ("liquibase " * 100).bytes
+        def crc = new CRC32()
+        crc.update(content)
+
+        def bytes = new ByteArrayOutputStream()
+        new ZipOutputStream(bytes).withCloseable { out ->
+            def entry = new ZipEntry("liquibase.txt")
+            entry.method = ZipEntry.STORED
+            entry.size = content.length
+            entry.crc = crc.value
+            out.putNextEntry(entry)
+            out.write(content)
+            out.closeEntry()
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * Flips a byte of the stored entry's content, so only its CRC is wrong
+     */
+    private static byte[] corrupt(byte[] zip) {
+        def copy = Arrays.copyOf(zip, zip.length)
+        copy[100] = (byte) (copy[100] ^ 0xFF)
+        return copy
+    }
+}
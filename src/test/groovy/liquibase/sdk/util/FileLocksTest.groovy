@@ -0,0 +1,76 @@
+package liquibase.sdk.util
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class FileLocksTest extends Specification {
+
+    def "getOrCreate creates the file once for concurrent callers"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def locks = new FileLocks(directory)
+        def created = new AtomicInteger()
+        def executor = Executors.newFixedThreadPool(4)
+        def futures = (1..8).collect {
+            executor.submit({
+                locks.getOrCreate("artifact-1.zip", { file ->
+                    created.incrementAndGet()
+                    Thread.sleep(50)
+                    file.text = "content"
+                } as FileLocks.Creator)
+            } as Callable<File>)
+        }
+        def files = futures*.get()
+        executor.shutdown()
+
+        then:
+        created.get() == 1
+        files.every { it == new File(directory, "artifact-1.zip") && it.text == "content" }
+        directory.listFiles()*.name.sort() == ["artifact-1.zip", "artifact-1.zip.lock"]
+
+        cleanup:
+        directory?.deleteDir()
+    }
+
+    def "failed creation leaves nothing behind and can be retried"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def locks = new FileLocks(directory)
+        locks.getOrCreate("artifact-1.zip", { file -> throw new IOException("Download failed") } as FileLocks.Creator)
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Download failed"
+        !new File(directory, "artifact-1.zip").exists()
+        locks.getOrCreate("artifact-1.zip", { file -> file.text = "retried" } as FileLocks.Creator).text == "retried"
+
+        cleanup:
+        directory?.deleteDir()
+    }
+
+    def "lock excludes other threads until closed"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def locks = new FileLocks(directory)
+        def lock = locks.lock("install-liquibase-core-0-SNAPSHOT")
+        def acquired = new CountDownLatch(1)
+        Thread.start {
+            locks.lock("install-liquibase-core-0-SNAPSHOT").withCloseable { acquired.countDown() }
+        }
+        def acquiredWhileHeld = acquired.await(200, TimeUnit.MILLISECONDS)
+        lock.close()
+
+        then:
+        !acquiredWhileHeld
+        acquired.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        directory?.deleteDir()
+    }
+}
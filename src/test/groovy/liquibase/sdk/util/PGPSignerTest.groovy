@@ -0,0 +1,115 @@
+package liquibase.sdk.util
+
+import org.bouncycastle.bcpg.ArmoredOutputStream
+import org.bouncycastle.bcpg.HashAlgorithmTags
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags
+import org.bouncycastle.jce.provider.BouncyCastleProvider
+import org.bouncycastle.openpgp.*
+import org.bouncycastle.openpgp.jcajce.JcaPGPObjectFactory
+import org.bouncycastle.openpgp.operator.jcajce.*
+import spock.lang.Specification
+
+import java.security.KeyPairGenerator
+
+class PGPSignerTest extends Specification {
+
+    def "sign creates a detached signature that verifies"() {
+        when:
+        def provider = new BouncyCastleProvider()
+        def generator = KeyPairGenerator.getInstance("RSA", provider)
+        generator.initialize(2048)
+        def keyPair = new JcaPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date())
+        def sha1Calc = new JcaPGPDigestCalculatorProviderBuilder().build().get(HashAlgorithmTags.SHA1)
+        def secretKey = new PGPSecretKey(PGPSignature.DEFAULT_CERTIFICATION, keyPair, "test@example.com", sha1Calc, null, null,
+                new JcaPGPContentSignerBuilder(keyPair.publicKey.algorithm, HashAlgorithmTags.SHA256),
+                new JcePBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1Calc).setProvider(provider).build("secret".toCharArray()))
+
+        def keyFile = File.createTempFile("liquibase-test-", ".asc")
+        keyFile.withOutputStream { out ->
+            new ArmoredOutputStream(out).withCloseable { armored -> secretKey.encode(armored) }
+        }
+
+        def file = File.createTempFile("liquibase-test-", ".jar")
+        file.text = "content to sign"
+
+        PGPSigner.load(keyFile, null, "secret").sign(file)
+
+        def signatureFile = new File(file.absolutePath + ".asc")
+        def signature = new FileInputStream(signatureFile).withCloseable { input ->
+            ((PGPSignatureList) new JcaPGPObjectFactory(PGPUtil.getDecoderStream(input)).nextObject()).get(0)
+        }
+        signature.init(new JcaPGPContentVerifierBuilderProvider().setProvider(provider), secretKey.publicKey)
+        signature.update(file.bytes)
+
+        then:
+        signatureFile.text.startsWith("-----BEGIN PGP SIGNATURE-----")
+        signature.verify()
+
+        cleanup:
+        keyFile?.delete()
+        file?.delete()
+        signatureFile?.delete()
+    }
+
+    def "load fails with the wrong passphrase"() {
+        when:
+        def provider = new BouncyCastleProvider()
+        def generator = KeyPairGenerator.getInstance("RSA", provider)
+        generator.initialize(2048)
+        def keyPair = new JcaPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date())
+        def sha1Calc = new JcaPGPDigestCalculatorProviderBuilder().build().get(HashAlgorithmTags.SHA1)
+        def secretKey = new PGPSecretKey(PGPSignature.DEFAULT_CERTIFICATION, keyPair, "test@example.com", sha1Calc, null, null,
+                new JcaPGPContentSignerBuilder(keyPair.publicKey.algorithm, HashAlgorithmTags.SHA256),
+                new JcePBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1Calc).setProvider(provider).build("secret".toCharArray()))
+
+        def keyFile = File.createTempFile("liquibase-test-", ".gpg")
+        keyFile.bytes = secretKey.encoded
+
+        PGPSigner.load(keyFile, null, "wrong")
+
+        then:
+        def e = thrown(IOException)
+        e.message.contains("Check GPG_PASSWORD")
+
+        cleanup:
+        keyFile?.delete()
+    }
+
+    @spock.lang.Unroll
+    def "load without a passphrase works only for unprotected keys, protected: #protectedKey"() {
+        when:
+        def provider = new BouncyCastleProvider()
+        def generator = KeyPairGenerator.getInstance("RSA", provider)
+        generator.initialize(2048)
+        def keyPair = new JcaPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date())
+        def sha1Calc = new JcaPGPDigestCalculatorProviderBuilder().build().get(HashAlgorithmTags.SHA1)
+        def encryptor = protectedKey ? new JcePBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1Calc).setProvider(provider).build("secret".toCharArray()) : null
+        def secretKey = new PGPSecretKey(PGPSignature.DEFAULT_CERTIFICATION, keyPair, "test@example.com", sha1Calc, null, null,
+                new JcaPGPContentSignerBuilder(keyPair.publicKey.algorithm, HashAlgorithmTags.SHA256), encryptor)
+
+        def keyFile = File.createTempFile("liquibase-test-", ".gpg")
+        keyFile.bytes = secretKey.encoded
+
+        def file = File.createTempFile("liquibase-test-", ".jar")
+        file.text = "content to sign"
+
+        def error = null
+        try {
+            PGPSigner.load(keyFile, null, null).sign(file)
+        } catch (IOException e) {
+            error = e.message
+        }
+
+        then:
+        new File(file.absolutePath + ".asc").exists() == !protectedKey
+        error == (protectedKey ? "Key " + Long.toHexString(secretKey.keyID) + " is passphrase-protected but GPG_PASSWORD is not set" : null)
+
+        cleanup:
+        keyFile?.delete()
+        file?.delete()
+        new File(file.absolutePath + ".asc").delete()
+
+        where:
+        protectedKey << [false, true]
+    }
+}
@@ -0,0 +1,135 @@
+package liquibase.sdk.util
+
+import spock.lang.Specification
+
+class ParallelUtilTest extends Specification {
+
+    def "map returns results in item order"() {
+        expect:
+        ParallelUtil.map([5, 1, 4, 2, 3], 3, { item ->
+            Thread.sleep(item * 10)
+            return item * 2
+        } as ParallelUtil.Task) == [10, 2, 8, 4, 6]
+    }
+
+    def "map reports the first failing item regardless of timing"() {
+        when:
+        ParallelUtil.map([1, 2, 3, 4], 4, { item ->
+            Thread.sleep((5 - item) * 20)
+            if (item >= 2) {
+                throw new IOException("Failed " + item)
+            }
+            return item
+        } as ParallelUtil.Task)
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Failed 2"
+        e.suppressed*.message == ["Failed 3", "Failed 4"]
+    }
+
+    def "pipeline consumes every result and never has more than maxPending waiting"() {
+        when:
+        def inFlight = new java.util.concurrent.atomic.AtomicInteger()
+        def maxInFlight = new java.util.concurrent.atomic.AtomicInteger()
+        def consumed = []
+        ParallelUtil.pipeline((1..20).toList(), 4, 3, { item ->
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), { a, b -> Math.max(a, b) } as java.util.function.IntBinaryOperator)
+            return item
+        } as ParallelUtil.Task, { result ->
+            Thread.sleep(5)
+            consumed.add(result)
+            inFlight.decrementAndGet()
+        } as ParallelUtil.Consumer)
+
+        then:
+        consumed.sort() == (1..20).toList()
+        maxInFlight.get() <= 3
+    }
+
+    def "pipeline stops on the first failure and discards unconsumed results"() {
+        when:
+        def discarded = Collections.synchronizedList([])
+        ParallelUtil.pipeline([1, 2, 3], 3, 3, { item ->
+            if (item == 3) {
+                Thread.sleep(200)
+            }
+            return item
+        } as ParallelUtil.Task, new ParallelUtil.Consumer<Integer>() {
+            @Override
+            void accept(Integer result) {
+                throw new IOException("Cannot consume " + result)
+            }
+
+            @Override
+            void discard(Integer result) {
+                discarded.add(result)
+            }
+        })
+
+        then:
+        def e = thrown(IOException)
+        e.message.startsWith("Cannot consume")
+        discarded.size() >= 1
+        !discarded.contains(3)
+    }
+
+    def threadCount() {
+        expect:
+        ParallelUtil.threadCount(3) == 3
+        ParallelUtil.threadCount(0) == Runtime.getRuntime().availableProcessors()
+    }
+
+    def "BoundedExecutor never runs more than maxRunning tasks at once"() {
+        when:
+        def executor = new ParallelUtil.BoundedExecutor(java.util.concurrent.Executors.newCachedThreadPool(), 3)
+        def running = new java.util.concurrent.atomic.AtomicInteger()
+        def maxRunning = new java.util.concurrent.atomic.AtomicInteger()
+        def futures = (1..20).collect { item ->
+            executor.submit({
+                maxRunning.accumulateAndGet(running.incrementAndGet(), { a, b -> Math.max(a, b) } as java.util.function.IntBinaryOperator)
+                Thread.sleep(5)
+                running.decrementAndGet()
+                return item
+            } as java.util.concurrent.Callable)
+        }
+
+        then:
+        futures*.get() == (1..20).toList()
+        maxRunning.get() == 3
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+
+    def "BoundedExecutor cancels tasks still waiting when shut down"() {
+        when:
+        def executor = new ParallelUtil.BoundedExecutor(java.util.concurrent.Executors.newCachedThreadPool(), 1)
+        def started = new java.util.concurrent.CountDownLatch(1)
+        def first = executor.submit({
+            started.countDown()
+            Thread.sleep(10000)
+        } as java.util.concurrent.Callable)
+        def second = executor.submit({ "never" } as java.util.concurrent.Callable)
+        started.await()
+        executor.shutdownNow()
+
+        then:
+        executor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)
+        first.isDone()
+        second.isCancelled()
+    }
+
+    def "newExecutor uses virtual threads when the JDK has them"() {
+        when:
+        def executor = ParallelUtil.newExecutor(2)
+        def threadName = executor.submit({ Thread.currentThread().name } as java.util.concurrent.Callable).get()
+
+        then:
+        ParallelUtil.isUsingVirtualThreads() == (Thread.metaClass.getStaticMetaMethod("ofVirtual", [] as Object[]) != null)
+        threadName.startsWith(ParallelUtil.isUsingVirtualThreads() ? "liquibase-sdk-virtual-" : "liquibase-sdk-")
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+}
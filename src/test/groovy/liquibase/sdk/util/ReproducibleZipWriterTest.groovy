@@ -0,0 +1,82 @@
+package liquibase.sdk.util
+
+import org.apache.commons.compress.archivers.zip.ZipFile
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class ReproducibleZipWriterTest extends Specification {
+
+    @Unroll
+    def "same files give the same zip regardless of modification time and order (parallel: #parallel)"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def files = (1..20).collect { i ->
+            def file = new File(directory, "file-" + i + (i % 3 == 0 ? ".jar" : ".txt"))
+            file.text = ("content " + i + "\n") * (i * 1000)
+            return file
+        }
+
+        def first = new File(directory, "first.zip")
+        createWriter(parallel).write(first, files, null)
+
+        files.each { it.setLastModified(it.lastModified() - 86400000L) }
+        def second = new File(directory, "second.zip")
+        createWriter(parallel).write(second, files.reverse(), null)
+
+        then:
+        first.bytes == second.bytes
+        entryNames(first) == files*.name.sort()
+        new ZipFile(first).withCloseable { zip -> Collections.list(zip.entries)*.time.unique() } == [ReproducibleZipWriter.ENTRY_TIME]
+
+        cleanup:
+        FileUtils.deleteQuietly(directory)
+
+        where:
+        parallel << [true, false]
+    }
+
+    def "entries of an existing zip are carried over unless replaced"() {
+        when:
+        def directory = Files.createTempDirectory("liquibase-test-").toFile()
+        def a = new File(directory, "a.txt")
+        def b = new File(directory, "b.txt")
+        def c = new File(directory, "c.txt")
+        a.text = "old a"
+        b.text = "old b"
+        def existing = new File(directory, "existing.zip")
+        createWriter(true).write(existing, [a, b], null)
+
+        b.text = "new b"
+        c.text = "new c"
+        def updated = new File(directory, "updated.zip")
+        def names = createWriter(true).write(updated, [c, b], existing)
+
+        def full = new File(directory, "full.zip")
+        a.text = "old a"
+        createWriter(true).write(full, [a, b, c], null)
+
+        then:
+        names as List == ["a.txt", "b.txt", "c.txt"]
+        entryNames(updated) == ["a.txt", "b.txt", "c.txt"]
+        new ZipFile(updated).withCloseable { zip -> zip.getInputStream(zip.getEntry("b.txt")).text } == "new b"
+        updated.bytes == full.bytes
+
+        cleanup:
+        FileUtils.deleteQuietly(directory)
+    }
+
+    private static ReproducibleZipWriter createWriter(boolean parallel) {
+        def writer = new ReproducibleZipWriter(-1)
+        if (parallel) {
+            writer.setParallelCompression(new BudgetedBackingStoreSupplier(10000, null), 4)
+        }
+        return writer
+    }
+
+    private static List<String> entryNames(File zip) {
+        return new ZipFile(zip).withCloseable { Collections.list(it.entriesInPhysicalOrder)*.name }
+    }
+}